@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * <p>
+ * Factory of functional accessors for getter methods.
+ * </p>
+ *
+ * <p>
+ * Accessors are spun with {@link LambdaMetafactory}, so once JIT-compiled a read
+ * costs about as much as a direct call. When the metafactory cannot link the
+ * method, or when its declaring class or return type is not visible by name
+ * from the class loader of the lookup (for example a class loaded by a child
+ * class loader of a web application or plugin), the accessor falls back to
+ * invoking a {@link MethodHandle}.
+ * </p>
+ *
+ * @version $Id$
+ */
+final class Accessors {
+
+	private static final MethodType OBJECT_READER = MethodType.methodType(Object.class, Object.class);
+
+	private Accessors() {
+	}
+
+	/**
+	 * Return a function invoking the specified no-argument method on its argument
+	 * and boxing primitive results.
+	 *
+	 * @param method Accessible getter or record accessor
+	 * @return the accessor function
+	 * @throws IllegalAccessException if the method cannot be accessed
+	 */
+	@SuppressWarnings("unchecked")
+	static Function<Object, Object> reader(final Method method) throws IllegalAccessException {
+		final Object function = spin(method, Function.class, "apply", Object.class);
+		if (function != null) {
+			return (Function<Object, Object>) function;
+		}
+		final MethodHandle handle = RecordSupport.lookup(method.getDeclaringClass()).unreflect(method)
+				.asType(OBJECT_READER);
+		return new Function<Object, Object>() {
+			@Override
+			public Object apply(final Object bean) {
+				try {
+					return handle.invokeExact(bean);
+				} catch (final RuntimeException e) {
+					throw e;
+				} catch (final Error e) {
+					throw e;
+				} catch (final Throwable e) {
+					throw new UndeclaredThrowableException(e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Return a function invoking the specified <code>int</code> accessor, or
+	 * <code>null</code> if the metafactory cannot link it.
+	 */
+	@SuppressWarnings("unchecked")
+	static ToIntFunction<Object> intReader(final Method method) {
+		return (ToIntFunction<Object>) spin(method, ToIntFunction.class, "applyAsInt", int.class);
+	}
+
+	/**
+	 * Return a function invoking the specified <code>long</code> accessor, or
+	 * <code>null</code> if the metafactory cannot link it.
+	 */
+	@SuppressWarnings("unchecked")
+	static ToLongFunction<Object> longReader(final Method method) {
+		return (ToLongFunction<Object>) spin(method, ToLongFunction.class, "applyAsLong", long.class);
+	}
+
+	/**
+	 * Return a function invoking the specified <code>double</code> accessor, or
+	 * <code>null</code> if the metafactory cannot link it.
+	 */
+	@SuppressWarnings("unchecked")
+	static ToDoubleFunction<Object> doubleReader(final Method method) {
+		return (ToDoubleFunction<Object>) spin(method, ToDoubleFunction.class, "applyAsDouble", double.class);
+	}
+
+	/**
+	 * Implement the single method <code>methodName</code> of
+	 * <code>functionType</code>, which takes an <code>Object</code> and returns
+	 * <code>returnType</code>, by a call to <code>method</code>.
+	 */
+	private static Object spin(final Method method, final Class<?> functionType, final String methodName,
+			final Class<?> returnType) {
+		try {
+			final MethodHandles.Lookup lookup = RecordSupport.lookup(method.getDeclaringClass());
+			final ClassLoader loader = lookup.lookupClass().getClassLoader();
+			if (!isVisible(loader, method.getDeclaringClass()) || !isVisible(loader, method.getReturnType())) {
+				return null; // The spun class would link other classes, or none, by these names
+			}
+			final MethodHandle target = lookup.unreflect(method);
+			final Class<?> resultType = returnType.isPrimitive() ? method.getReturnType()
+					: ConvertUtils.primitiveToWrapper(method.getReturnType());
+			final CallSite site = LambdaMetafactory.metafactory(lookup, methodName,
+					MethodType.methodType(functionType), MethodType.methodType(returnType, Object.class), target,
+					MethodType.methodType(resultType, method.getDeclaringClass()));
+			return site.getTarget().invoke();
+		} catch (final Throwable e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Return <code>true</code> if the specified class is the one resolved by its
+	 * name from the specified class loader.
+	 */
+	private static boolean isVisible(final ClassLoader loader, final Class<?> type) {
+		if (type.isPrimitive()) {
+			return true;
+		}
+		try {
+			return Class.forName(type.getName(), false, loader) == type;
+		} catch (final ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+}
@@ -1,349 +1,1409 @@
-/*
- * Licensed to the Apache Software Foundation (ASF) under one or more
- * contributor license agreements.  See the NOTICE file distributed with
- * this work for additional information regarding copyright ownership.
- * The ASF licenses this file to You under the Apache License, Version 2.0
- * (the "License"); you may not use this file except in compliance with
- * the License.  You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package org.apache.commons.beanutils;
-
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
-import java.util.Map;
-import java.util.Optional;
-
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.deking.util.RecordInvokeUtils;
-import org.deking.util.RecordReflectUtils;
-import org.deking.util.ReflectionUtils;
-import org.deking.util.common.RecComponent;
-
-/**
- * <p>
- * JavaBean property population methods.
- * </p>
- *
- * <p>
- * This class provides implementations for the utility methods in
- * {@link BeanUtils}. Different instances can be used to isolate caches between
- * classloaders and to vary the value converters registered.
- * </p>
- *
- * @version $Id$
- * @see BeanUtils
- * @since 1.7
- */
-
-public final class BeanUtilsBeanImpl extends BeanUtilsBean {
-	/**
-	 * Logging for this instance
-	 */
-	private final Log log = LogFactory.getLog(BeanUtils.class);
-
-	public BeanUtilsBeanImpl(final ConvertUtilsBean convertUtilsBean) {
-		super(convertUtilsBean, new PropertyUtilsBeanImpl());
-	}
-
-	/**
-	 * <p>
-	 * Copy property values from the origin bean to the destination bean for all
-	 * cases where the property names are the same. For each property, a conversion
-	 * is attempted as necessary. All combinations of standard JavaBeans and
-	 * DynaBeans as origin and destination are supported. Properties that exist in
-	 * the origin bean, but do not exist in the destination bean (or are read-only
-	 * in the destination bean) are silently ignored.
-	 * </p>
-	 *
-	 * <p>
-	 * If the origin "bean" is actually a <code>Map</code>, it is assumed to contain
-	 * String-valued <strong>simple</strong> property names as the keys, pointing at
-	 * the corresponding property values that will be converted (if necessary) and
-	 * set in the destination bean. <strong>Note</strong> that this method is
-	 * intended to perform a "shallow copy" of the properties and so complex
-	 * properties (for example, nested ones) will not be copied.
-	 * </p>
-	 *
-	 * <p>
-	 * This method differs from <code>populate()</code>, which was primarily
-	 * designed for populating JavaBeans from the map of request parameters
-	 * retrieved on an HTTP request, is that no scalar->indexed or indexed->scalar
-	 * manipulations are performed. If the origin property is indexed, the
-	 * destination property must be also.
-	 * </p>
-	 *
-	 * <p>
-	 * If you know that no type conversions are required, the
-	 * <code>copyProperties()</code> method in {@link PropertyUtils} will execute
-	 * faster than this method.
-	 * </p>
-	 *
-	 * <p>
-	 * <strong>FIXME</strong> - Indexed and mapped properties that do not have
-	 * getter and setter methods for the underlying array or Map are not copied by
-	 * this method.
-	 * </p>
-	 *
-	 * @param dest Destination bean whose properties are modified
-	 * @param orig Origin bean whose properties are retrieved
-	 *
-	 * @throws IllegalAccessException    if the caller does not have access to the
-	 *                                   property accessor method
-	 * @throws IllegalArgumentException  if the <code>dest</code> or
-	 *                                   <code>orig</code> argument is null or if
-	 *                                   the <code>dest</code> property type is
-	 *                                   different from the source type and the
-	 *                                   relevant converter has not been registered.
-	 * @throws InvocationTargetException if the property accessor method throws an
-	 *                                   exception
-	 */
-	@Override
-	public void copyProperties(final Object dest, final Object orig)
-			throws IllegalAccessException, InvocationTargetException {
-
-		// Validate existence of the specified beans
-		if (dest == null) {
-			throw new IllegalArgumentException("No destination bean specified");
-		}
-		if (orig == null) {
-			throw new IllegalArgumentException("No origin bean specified");
-		}
-		if (log.isDebugEnabled()) {
-			log.debug("BeanUtils.copyProperties(" + dest + ", " + orig + ")");
-		}
-
-		// Copy the properties, converting as necessary
-		if (orig instanceof DynaBean) {
-			final DynaProperty[] origDescriptors = ((DynaBean) orig).getDynaClass().getDynaProperties();
-			for (DynaProperty origDescriptor : origDescriptors) {
-				final String name = origDescriptor.getName();
-				// Need to check isReadable() for WrapDynaBean
-				// (see Jira issue# BEANUTILS-61)
-				if (getPropertyUtils().isReadable(orig, name) && getPropertyUtils().isWriteable(dest, name)) {
-					final Object value = ((DynaBean) orig).get(name);
-					copyProperty(dest, name, value);
-				}
-			}
-		} else if (orig instanceof Map) {
-			@SuppressWarnings("unchecked")
-			final
-			// Map properties are always of type <String, Object>
-			Map<String, Object> propMap = (Map<String, Object>) orig;
-			for (final Map.Entry<String, Object> entry : propMap.entrySet()) {
-				final String name = entry.getKey();
-				if (getPropertyUtils().isWriteable(dest, name)) {
-					copyProperty(dest, name, entry.getValue());
-				}
-			}
-		} else /* if (orig is a standard JavaBean) */ {
-			if(RecordInvokeUtils.isRecord(dest.getClass())) {
-				throw new IllegalArgumentException("The destination can't be record type");
-			}
-			boolean isRecord = RecordInvokeUtils.isRecord(orig.getClass());
-			final Object[] origDescriptors = isRecord ? RecordInvokeUtils.recordComponents(orig.getClass(), null)
-					: getPropertyUtils().getPropertyDescriptors(orig);
-			for (Object origDescriptor : origDescriptors) {
-//				@SuppressWarnings("preview")
-//				final String name = (switch (origDescriptor) {
-//				case PropertyDescriptor p -> p.getName();
-//				case java.lang.reflect.RecordComponent r -> r.getName();
-//				default -> throw new IllegalArgumentException("Unexpected value: " + origDescriptor);
-//				});
-				String name = null;
-				if (origDescriptor instanceof PropertyDescriptor) {
-					name = ((PropertyDescriptor) origDescriptor).getName();
-				} else if (origDescriptor instanceof RecComponent) {
-					name = ((RecComponent) origDescriptor).name();
-				}
-				if ("class".equals(name)) {
-					continue; // No point in trying to set an object's class
-				}
-				if ((getPropertyUtils().isReadable(orig, name) || isRecord)
-						&& getPropertyUtils().isWriteable(dest, name)) {
-					try {
-						final Object value = isRecord
-								? RecordReflectUtils.componentValue(orig,
-										new RecComponent(name, ((RecComponent) origDescriptor).type(), -1))
-								: getSimpleProperty(orig, name);
-						copyProperty(dest, name, value);
-					} catch (final NoSuchMethodException e) {
-						// Should not happen
-					}
-				}
-			}
-		}
-	}
-
-	public <T> T copyProperties(final Class<T> dest, final Object orig, Map<String, Object> map)
-			throws IllegalAccessException, InvocationTargetException {
-
-		// Validate existence of the specified beans
-		if (dest == null) {
-			throw new IllegalArgumentException("No destination bean specified");
-		}
-		if (orig == null) {
-			throw new IllegalArgumentException("No origin bean specified");
-		}
-		if (log.isDebugEnabled()) {
-			log.debug("BeanUtils.copyProperties(" + dest + ", " + orig + ")");
-		}
-
-		RecComponent[] recordComponents = RecordInvokeUtils.recordComponents(dest, null);
-		Object[] arr = new Object[recordComponents.length];
-		int index = 0;
-		boolean mapNotNull = map != null;
-		for (RecComponent recordComponent : recordComponents) {
-			Class<?> recordComponentClass = recordComponent.type() instanceof ParameterizedType
-					? (Class<?>) ((ParameterizedType) recordComponent.type()).getRawType()
-					: (Class<?>) recordComponent.type();
-			arr[index] = ReflectionUtils.getDefaultValue(recordComponentClass);
-			if (mapNotNull && map.containsKey(recordComponent.name())) {
-				arr[index] = map.get(recordComponent.name());
-			}
-			// Copy the properties, converting as necessary
-			else if (orig instanceof DynaBean) {
-				final DynaProperty[] origDescriptors = ((DynaBean) orig).getDynaClass().getDynaProperties();
-				for (DynaProperty origDescriptor : origDescriptors) {
-					final String name = origDescriptor.getName();
-
-					if (recordComponent.name().equals(name)) {
-						// Need to check isReadable() for WrapDynaBean
-						// (see Jira issue# BEANUTILS-61)
-						if (getPropertyUtils().isReadable(orig, name) && getPropertyUtils().isWriteable(dest, name)) {
-							final Object value = ((DynaBean) orig).get(name);
-							arr[index] = value;
-						}
-					}
-				}
-			} else if (orig instanceof Map) {
-				@SuppressWarnings("unchecked")
-				// Map properties are always of type <String, Object>
-				final Map<String, Object> propMap = (Map<String, Object>) orig;
-				for (final Map.Entry<String, Object> entry : propMap.entrySet()) {
-					final String name = entry.getKey();
-					if (recordComponent.name().equals(name)) {
-						if (getPropertyUtils().isWriteable(dest, name)) {
-							arr[index] = entry.getValue();
-						}
-					}
-				}
-			} else /* if (orig is a standard JavaBean) */ {
-				boolean isRecord = RecordInvokeUtils.isRecord(orig.getClass());
-				final Object[] origDescriptors = isRecord ? RecordInvokeUtils.recordComponents(dest, null)
-						: getPropertyUtils().getPropertyDescriptors(orig);
-
-				for (Object origDescriptor : origDescriptors) {
-//					@SuppressWarnings("preview")
-//					final String name = (switch (origDescriptor) {
-//					case PropertyDescriptor p -> p.getName();
-//					case java.lang.reflect.RecordComponent r -> r.getName();
-//					default -> throw new IllegalArgumentException("Unexpected value: " + origDescriptor);
-//					});
-					String name = null;
-					if (origDescriptor instanceof PropertyDescriptor) {
-						name = ((PropertyDescriptor) origDescriptor).getName();
-					} else if (origDescriptor instanceof RecComponent) {
-						name = ((RecComponent) origDescriptor).name();
-					}
-					if ("class".equals(name)) {
-						continue; // No point in trying to set an object's class
-					}
-					if (recordComponent.name().equals(name)) {
-						if ((getPropertyUtils().isReadable(orig, name) || isRecord)) {
-							try {
-								final Object value = isRecord
-										? RecordReflectUtils.componentValue(orig,
-												new RecComponent(name, ((RecComponent) origDescriptor).type(), -1))
-										: getSimpleProperty(orig, name);
-								arr[index] = value;
-							} catch (final NoSuchMethodException e) {
-								log.error(e.getMessage());
-							}
-						}
-					}
-				}
-			}
-			index++;
-		}
-		return (T) RecordInvokeUtils.invokeCanonicalConstructor(dest, arr);
-	}
-
-	public <T> T populate(final Class<T> recordClass, final Map<String, ? extends Object> properties) {
-		if (properties == null) {
-			return null;
-		}
-		if (log.isDebugEnabled()) {
-			log.debug("BeanUtils.populate(" + recordClass + ", " + properties + ")");
-		}
-		int i = 0;
-		RecComponent[] recordComponents = RecordInvokeUtils.recordComponents(recordClass, null);
-		Object[] arr = new Object[recordComponents.length];
-		for (RecComponent recordComponent : recordComponents) {
-			final String name = recordComponent.name();
-			Type type = recordComponent.type();
-			Class<?> recordComponentClass = type instanceof ParameterizedType
-					? (Class<?>) ((ParameterizedType) type).getRawType()
-					: (Class<?>) type;
-			Object value = Optional.ofNullable(properties.get(name))
-					.map(v -> v.getClass().isArray() ? ((Object[]) v)[0] : v)
-					.orElseGet(() -> ReflectionUtils.getDefaultValue(recordComponentClass)), newValue = null;
-			if (recordComponentClass.isArray()) {
-				if (value instanceof String) {
-					newValue = getConvertUtils().convert((String) value, recordComponentClass.getComponentType());
-					if (!newValue.getClass().isArray()) {
-						newValue = convert(value, recordComponentClass);
-					}
-					if (!newValue.getClass().isArray()) {
-						newValue = new String[] { (String) newValue };
-					}
-				} else if (value instanceof String[]) {
-					newValue = getConvertUtils().convert(((String[]) value)[0],
-							recordComponentClass.getComponentType());
-				} else {
-					newValue = convert(value, recordComponentClass.getComponentType());
-				}
-			} else {
-				boolean isOptional = false;
-				Class<?> clazz;
-				if (recordComponentClass == Optional.class) {
-					isOptional = true;
-					clazz = (Class<?>) ((ParameterizedType) type).getActualTypeArguments()[0];
-				} else {
-					clazz = recordComponentClass;
-				}
-				if (value instanceof String) {
-					if (isOptional) {
-						newValue = Optional.of(getConvertUtils().convert((String) value, clazz));
-					} else {
-						newValue = getConvertUtils().convert((String) value, clazz);
-					}
-				} else if (value instanceof String[]) {
-					newValue = getConvertUtils().convert(((String[]) value)[0], clazz);
-				} else {
-					if (isOptional) {
-						newValue = value != null ? Optional.of(getConvertUtils().convert((String) value, clazz)) : null;
-					} else {
-						newValue = convert(value, clazz);
-					}
-				}
-			}
-			arr[i] = newValue;
-			i++;
-		}
-		T record = (T) RecordInvokeUtils.invokeCanonicalConstructor(recordClass, arr);
-		return record;
-	}
-
-}
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.beans.PropertyDescriptor;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * <p>
+ * JavaBean property population methods.
+ * </p>
+ *
+ * <p>
+ * This class provides implementations for the utility methods in
+ * {@link BeanUtils}. Different instances can be used to isolate caches between
+ * classloaders and to vary the value converters registered.
+ * </p>
+ *
+ * @version $Id$
+ * @see BeanUtils
+ * @since 1.7
+ */
+
+public final class BeanUtilsBeanImpl extends BeanUtilsBean {
+	/**
+	 * Logging for this instance
+	 */
+	private final Log log = LogFactory.getLog(BeanUtils.class);
+
+	/**
+	 * Compiled copy plans, keyed by origin class and then by destination class
+	 */
+	private volatile ClassValue<ConcurrentMap<Class<?>, CopyPlan>> copyPlans = newPlanCache();
+
+	/**
+	 * Compiled record plans, keyed by origin class and then by record class
+	 */
+	private volatile ClassValue<ConcurrentMap<Class<?>, RecordPlan>> recordPlans = newPlanCache();
+
+	/**
+	 * Compiled record to record copy plans, keyed by origin record class and then
+	 * by destination record class
+	 */
+	private volatile ClassValue<ConcurrentMap<Class<?>, RecordCopyPlan>> recordCopyPlans = newPlanCache();
+
+	/**
+	 * Compiled populate programs, keyed by record class
+	 */
+	private volatile ClassValue<PopulateProgram> populatePrograms = newPopulatePrograms();
+
+	/**
+	 * Resolved conversions, keyed by value class and then by target type
+	 */
+	private volatile ConverterCache converters;
+
+	/**
+	 * Number of copies between the same pair of classes before the copy is
+	 * compiled to bytecode, negative to never compile
+	 */
+	private volatile int compileThreshold = DEFAULT_COMPILE_THRESHOLD;
+
+	/**
+	 * Default number of copies between the same pair of classes before the copy
+	 * is compiled to bytecode.
+	 */
+	public static final int DEFAULT_COMPILE_THRESHOLD = 1000;
+
+	public BeanUtilsBeanImpl(final ConvertUtilsBean convertUtilsBean) {
+		super(convertUtilsBean, new PropertyUtilsBeanImpl());
+		this.converters = new ConverterCache(getConvertUtils());
+	}
+
+	/**
+	 * <p>
+	 * Copy property values from the origin bean to the destination bean for all
+	 * cases where the property names are the same. For each property, a conversion
+	 * is attempted as necessary. All combinations of standard JavaBeans and
+	 * DynaBeans as origin and destination are supported. Properties that exist in
+	 * the origin bean, but do not exist in the destination bean (or are read-only
+	 * in the destination bean) are silently ignored.
+	 * </p>
+	 *
+	 * <p>
+	 * If the origin "bean" is actually a <code>Map</code>, it is assumed to contain
+	 * String-valued <strong>simple</strong> property names as the keys, pointing at
+	 * the corresponding property values that will be converted (if necessary) and
+	 * set in the destination bean. <strong>Note</strong> that this method is
+	 * intended to perform a "shallow copy" of the properties and so complex
+	 * properties (for example, nested ones) will not be copied.
+	 * </p>
+	 *
+	 * <p>
+	 * This method differs from <code>populate()</code>, which was primarily
+	 * designed for populating JavaBeans from the map of request parameters
+	 * retrieved on an HTTP request, is that no scalar->indexed or indexed->scalar
+	 * manipulations are performed. If the origin property is indexed, the
+	 * destination property must be also.
+	 * </p>
+	 *
+	 * <p>
+	 * If you know that no type conversions are required, the
+	 * <code>copyProperties()</code> method in {@link PropertyUtils} will execute
+	 * faster than this method.
+	 * </p>
+	 *
+	 * <p>
+	 * <strong>FIXME</strong> - Indexed and mapped properties that do not have
+	 * getter and setter methods for the underlying array or Map are not copied by
+	 * this method.
+	 * </p>
+	 *
+	 * @param dest Destination bean whose properties are modified
+	 * @param orig Origin bean whose properties are retrieved
+	 *
+	 * @throws IllegalAccessException    if the caller does not have access to the
+	 *                                   property accessor method
+	 * @throws IllegalArgumentException  if the <code>dest</code> or
+	 *                                   <code>orig</code> argument is null or if
+	 *                                   the <code>dest</code> property type is
+	 *                                   different from the source type and the
+	 *                                   relevant converter has not been registered.
+	 * @throws InvocationTargetException if the property accessor method throws an
+	 *                                   exception
+	 */
+	@Override
+	public void copyProperties(final Object dest, final Object orig)
+			throws IllegalAccessException, InvocationTargetException {
+
+		// Validate existence of the specified beans
+		if (dest == null) {
+			throw new IllegalArgumentException("No destination bean specified");
+		}
+		if (orig == null) {
+			throw new IllegalArgumentException("No origin bean specified");
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("BeanUtils.copyProperties(" + dest + ", " + orig + ")");
+		}
+
+		// Copy the properties, converting as necessary
+		if (orig instanceof DynaBean) {
+			final DynaProperty[] origDescriptors = ((DynaBean) orig).getDynaClass().getDynaProperties();
+			for (DynaProperty origDescriptor : origDescriptors) {
+				final String name = origDescriptor.getName();
+				// Need to check isReadable() for WrapDynaBean
+				// (see Jira issue# BEANUTILS-61)
+				if (getPropertyUtils().isReadable(orig, name) && getPropertyUtils().isWriteable(dest, name)) {
+					final Object value = ((DynaBean) orig).get(name);
+					copyProperty(dest, name, value);
+				}
+			}
+		} else if (orig instanceof Map) {
+			@SuppressWarnings("unchecked")
+			final
+			// Map properties are always of type <String, Object>
+			Map<String, Object> propMap = (Map<String, Object>) orig;
+			for (final Map.Entry<String, Object> entry : propMap.entrySet()) {
+				final String name = entry.getKey();
+				if (getPropertyUtils().isWriteable(dest, name)) {
+					copyProperty(dest, name, entry.getValue());
+				}
+			}
+		} else /* if (orig is a standard JavaBean) */ {
+			if(RecordMetadata.isRecord(dest.getClass())) {
+				throw new IllegalArgumentException("The destination can't be record type");
+			}
+			if (dest instanceof DynaBean || dest instanceof Map) {
+				copyPropertiesUnplanned(dest, orig);
+			} else {
+				final CopyPlan plan = getCopyPlan(dest.getClass(), orig.getClass());
+				if (plan.copier() != null) {
+					plan.copier().copyProperties(dest, orig, this);
+				} else {
+					plan.execute(dest, orig, compileThreshold);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return the compiled plan copying <code>origClass</code> instances to
+	 * <code>destClass</code> instances, compiling it on first use.
+	 */
+	private CopyPlan getCopyPlan(final Class<?> destClass, final Class<?> origClass) throws IllegalAccessException {
+		final ConcurrentMap<Class<?>, CopyPlan> plans = copyPlans.get(origClass);
+		CopyPlan plan = plans.get(destClass);
+		if (plan == null) {
+			plan = CopyPlan.compile(getPropertyUtils(), getConvertUtils(), destClass, origClass);
+			final CopyPlan existing = plans.putIfAbsent(destClass, plan);
+			if (existing != null) {
+				plan = existing;
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Return the compiled plan reading <code>metadata</code> components from
+	 * <code>origClass</code> instances, compiling it on first use.
+	 */
+	private RecordPlan getRecordPlan(final RecordMetadata metadata, final Class<?> origClass)
+			throws IllegalAccessException {
+		final ConcurrentMap<Class<?>, RecordPlan> plans = recordPlans.get(origClass);
+		RecordPlan plan = plans.get(metadata.recordClass());
+		if (plan == null) {
+			plan = RecordPlan.compile(getPropertyUtils(), metadata, origClass);
+			final RecordPlan existing = plans.putIfAbsent(metadata.recordClass(), plan);
+			if (existing != null) {
+				plan = existing;
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Copy a standard JavaBean or record to a destination that cannot be planned
+	 * by class, property by property through {@link #copyProperty}.
+	 */
+	private void copyPropertiesUnplanned(final Object dest, final Object orig)
+			throws IllegalAccessException, InvocationTargetException {
+		final RecordMetadata origMetadata = RecordMetadata.forClass(orig.getClass());
+		boolean isRecord = origMetadata != null;
+		final Object[] origDescriptors = isRecord ? origMetadata.components()
+				: getPropertyUtils().getPropertyDescriptors(orig);
+		for (Object origDescriptor : origDescriptors) {
+			String name = null;
+			if (origDescriptor instanceof PropertyDescriptor) {
+				name = ((PropertyDescriptor) origDescriptor).getName();
+			} else if (origDescriptor instanceof RecordMetadata.Component) {
+				name = ((RecordMetadata.Component) origDescriptor).name;
+			}
+			if ("class".equals(name)) {
+				continue; // No point in trying to set an object's class
+			}
+			if ((getPropertyUtils().isReadable(orig, name) || isRecord)
+					&& getPropertyUtils().isWriteable(dest, name)) {
+				try {
+					final Object value = isRecord
+							? ((RecordMetadata.Component) origDescriptor).reader.apply(orig)
+							: getSimpleProperty(orig, name);
+					copyProperty(dest, name, value);
+				} catch (final NoSuchMethodException e) {
+					// Should not happen
+				}
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Convert the value to an object of the specified class (if possible).
+	 * </p>
+	 *
+	 * <p>
+	 * The conversion is resolved once per pair of value class and target type:
+	 * values that a standard converter would return unchanged, and values of
+	 * types without a registered converter, are returned without calling any
+	 * converter. {@link #copyProperty} converts through this method. Call
+	 * {@link #clearCaches()} after changing the registered converters.
+	 * </p>
+	 *
+	 * <p>
+	 * Public so that the copiers generated from {@link RecordMapping} annotations
+	 * convert values exactly like this instance.
+	 * </p>
+	 *
+	 * @param value Value to be converted (may be null)
+	 * @param type  Class of the value to be converted to
+	 * @return The converted value
+	 * @throws ConversionException if thrown by an underlying Converter
+	 */
+	@Override
+	public Object convert(final Object value, final Class<?> type) {
+		if (value == null || type == null) {
+			return super.convert(value, type);
+		}
+		return converters.get(value.getClass(), type).apply(value);
+	}
+
+	/**
+	 * Return the number of copies between the same pair of classes after which
+	 * {@link #copyProperties(Object, Object)} compiles the copy to bytecode.
+	 *
+	 * @return the compile threshold, negative if copies are never compiled
+	 */
+	public int getCompileThreshold() {
+		return compileThreshold;
+	}
+
+	/**
+	 * <p>
+	 * Set the number of copies between the same pair of classes after which
+	 * {@link #copyProperties(Object, Object)} compiles the copy to bytecode.
+	 * </p>
+	 *
+	 * <p>
+	 * The copy is compiled into a hidden class with a direct call per property,
+	 * which requires Java 15 and accessible classes and accessors; otherwise the
+	 * copy keeps running through the compiled plan. Compilation costs far more
+	 * than a single copy, hence the threshold, which keeps cold class pairs on the
+	 * plan. The default is {@value #DEFAULT_COMPILE_THRESHOLD}.
+	 * </p>
+	 *
+	 * @param compileThreshold Number of copies before compilation, zero to
+	 *                         compile on the first copy, negative to never compile
+	 */
+	public void setCompileThreshold(final int compileThreshold) {
+		this.compileThreshold = compileThreshold;
+	}
+
+	/**
+	 * <p>
+	 * Discard every plan compiled by this instance.
+	 * </p>
+	 *
+	 * <p>
+	 * Plans and resolved conversions capture the property descriptors and the
+	 * converters in effect when they are compiled, so call this method after
+	 * registering or deregistering converters on the {@link ConvertUtilsBean}, or
+	 * after changing the introspection of the {@link PropertyUtilsBean}.
+	 * </p>
+	 */
+	public void clearCaches() {
+		converters = new ConverterCache(getConvertUtils());
+		copyPlans = newPlanCache();
+		recordPlans = newPlanCache();
+		recordCopyPlans = newPlanCache();
+		populatePrograms = newPopulatePrograms();
+	}
+
+	/**
+	 * Return the metadata of the specified record class.
+	 *
+	 * @throws IllegalArgumentException if <code>recordClass</code> is not a record
+	 *                                  class
+	 */
+	private static RecordMetadata recordMetadata(final Class<?> recordClass) {
+		final RecordMetadata metadata = RecordMetadata.forClass(recordClass);
+		if (metadata == null) {
+			throw new IllegalArgumentException("Class '" + recordClass.getName() + "' is not a record class");
+		}
+		return metadata;
+	}
+
+	private ClassValue<PopulateProgram> newPopulatePrograms() {
+		return new ClassValue<PopulateProgram>() {
+			@Override
+			protected PopulateProgram computeValue(final Class<?> recordClass) {
+				return PopulateProgram.compile(recordMetadata(recordClass), getConvertUtils());
+			}
+		};
+	}
+
+	private static <P> ClassValue<ConcurrentMap<Class<?>, P>> newPlanCache() {
+		return new ClassValue<ConcurrentMap<Class<?>, P>>() {
+			@Override
+			protected ConcurrentMap<Class<?>, P> computeValue(final Class<?> origClass) {
+				return new ConcurrentHashMap<Class<?>, P>();
+			}
+		};
+	}
+
+	public <T> T copyProperties(final Class<T> dest, final Object orig, Map<String, Object> map)
+			throws IllegalAccessException, InvocationTargetException {
+
+		// Validate existence of the specified beans
+		if (dest == null) {
+			throw new IllegalArgumentException("No destination bean specified");
+		}
+		if (orig == null) {
+			throw new IllegalArgumentException("No origin bean specified");
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("BeanUtils.copyProperties(" + dest + ", " + orig + ")");
+		}
+
+		final RecordMetadata metadata = recordMetadata(dest);
+		final RecordMetadata.Component[] components = metadata.components();
+		final RecordPlan plan = orig instanceof DynaBean || orig instanceof Map ? null
+				: getRecordPlan(metadata, orig.getClass());
+		if (plan != null && plan.copier() != null && (map == null || map.isEmpty())) {
+			return dest.cast(plan.copier().newInstance(orig));
+		}
+		Object[] arr = metadata.newArguments();
+		for (int index = 0; index < components.length; index++) {
+			final String name = components[index].name;
+			if (map != null && map.containsKey(name)) {
+				arr[index] = map.get(name);
+			} else if (orig instanceof DynaBean) {
+				// Need to check isReadable() for WrapDynaBean
+				// (see Jira issue# BEANUTILS-61)
+				if (((DynaBean) orig).getDynaClass().getDynaProperty(name) != null
+						&& getPropertyUtils().isReadable(orig, name)) {
+					arr[index] = ((DynaBean) orig).get(name);
+				}
+			} else if (orig instanceof Map) {
+				final Object value = ((Map<?, ?>) orig).get(name);
+				if (value != null || ((Map<?, ?>) orig).containsKey(name)) {
+					arr[index] = value;
+				}
+			} else /* if (orig is a standard JavaBean) */ {
+				if (plan.isReadable(index)) {
+					arr[index] = plan.read(index, orig);
+				}
+			}
+		}
+		return dest.cast(metadata.newInstance(arr));
+	}
+
+	/**
+	 * <p>
+	 * Create a record of the specified class holding a deep copy of the
+	 * properties of the origin bean, converting a graph of JavaBeans into the
+	 * matching graph of records.
+	 * </p>
+	 *
+	 * <p>
+	 * Components are filled with the semantics of
+	 * {@link #copyProperties(Class, Object, Map)} without overrides, except that
+	 * components whose class is a record, an array of records, a
+	 * <code>List</code> of records or a <code>Map</code> with record values are
+	 * copied recursively from the origin property: a nested origin is copied to
+	 * the record class of the component, and an origin array, collection or map
+	 * to a presized array, <code>ArrayList</code> or <code>LinkedHashMap</code>
+	 * whose elements are copied. Origins that are already instances of the
+	 * record class are kept as they are. The values of the other components are
+	 * converted with {@link #convert(Object, Class)} unless they are already
+	 * instances of the component class.
+	 * </p>
+	 *
+	 * <p>
+	 * The plan of every record class is computed once and reused, as are the
+	 * accessors of every origin class. Whether origin graphs may be cyclic is
+	 * decided from the record classes alone: only if they can reach themselves
+	 * through their components are the origins visited tracked by identity, in
+	 * which case an origin shared by several properties is copied once, and a
+	 * cycle is reported instead of followed forever.
+	 * </p>
+	 *
+	 * @param <T>         Record type
+	 * @param recordClass Record class to create
+	 * @param orig        Origin bean, record, <code>DynaBean</code> or
+	 *                    <code>Map</code> to copy
+	 * @return the new record graph
+	 *
+	 * @throws IllegalAccessException    if the caller does not have access to a
+	 *                                   property accessor method
+	 * @throws IllegalArgumentException  if an argument is null, if
+	 *                                   <code>recordClass</code> is not a record
+	 *                                   class, if a property does not match the
+	 *                                   type of its component or if the origin
+	 *                                   graph has a cycle
+	 * @throws InvocationTargetException if a property accessor method throws an
+	 *                                   exception
+	 */
+	public <T> T deepCopy(final Class<T> recordClass, final Object orig)
+			throws IllegalAccessException, InvocationTargetException {
+		if (recordClass == null) {
+			throw new IllegalArgumentException("No destination bean specified");
+		}
+		if (orig == null) {
+			throw new IllegalArgumentException("No origin bean specified");
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("BeanUtils.deepCopy(" + recordClass + ", " + orig + ")");
+		}
+		recordMetadata(recordClass);
+		final DeepCopyPlan plan = DeepCopyPlan.forClass(recordClass);
+		return recordClass.cast(new DeepCopy(plan.isCyclic()).copy(plan, orig));
+	}
+
+	/**
+	 * Copy of an origin whose deep copy is in progress
+	 */
+	private static final Object COPYING = new Object();
+
+	/**
+	 * A single deep copy.
+	 */
+	private final class DeepCopy {
+		/** Copies of the origins visited, <code>null</code> if cycles are impossible */
+		private final Map<Object, Object> copies;
+
+		DeepCopy(final boolean cyclic) {
+			this.copies = cyclic ? new IdentityHashMap<Object, Object>() : null;
+		}
+
+		Object copy(final DeepCopyPlan plan, final Object orig)
+				throws IllegalAccessException, InvocationTargetException {
+			final RecordMetadata metadata = plan.metadata();
+			if (metadata.recordClass().isInstance(orig)) {
+				return orig; // Records are immutable
+			}
+			if (copies != null) {
+				final Object copy = copies.get(orig);
+				if (copy == COPYING) {
+					throw new IllegalArgumentException("Cycle through an origin of class '" + orig.getClass().getName()
+							+ "' copied to record class '" + metadata.recordClass().getName() + "'");
+				} else if (metadata.recordClass().isInstance(copy)) {
+					return copy;
+				}
+				copies.put(orig, COPYING);
+			}
+			final RecordMetadata.Component[] components = metadata.components();
+			final RecordPlan recordPlan = orig instanceof DynaBean || orig instanceof Map ? null
+					: getRecordPlan(metadata, orig.getClass());
+			final Object[] args = metadata.newArguments();
+			for (int index = 0; index < components.length; index++) {
+				final String name = components[index].name;
+				final Object value;
+				if (orig instanceof DynaBean) {
+					if (((DynaBean) orig).getDynaClass().getDynaProperty(name) == null
+							|| !getPropertyUtils().isReadable(orig, name)) {
+						continue;
+					}
+					value = ((DynaBean) orig).get(name);
+				} else if (orig instanceof Map) {
+					if (!((Map<?, ?>) orig).containsKey(name)) {
+						continue;
+					}
+					value = ((Map<?, ?>) orig).get(name);
+				} else if (recordPlan.isReadable(index)) {
+					value = recordPlan.read(index, orig);
+				} else {
+					continue;
+				}
+				if (value == null) {
+					args[index] = null;
+				} else if (plan.kind(index) == DeepCopyPlan.VALUE) {
+					args[index] = ConvertUtils.primitiveToWrapper(components[index].type).isInstance(value) ? value
+							: convert(value, components[index].type);
+				} else {
+					args[index] = copyComponent(plan, index, value);
+				}
+			}
+			final Object record = metadata.newInstance(args);
+			if (copies != null) {
+				copies.put(orig, record);
+			}
+			return record;
+		}
+
+		/**
+		 * Copy the value of a record, array, <code>List</code> or
+		 * <code>Map</code> component. A value that is not an origin of the kind of
+		 * the component is returned as is.
+		 */
+		private Object copyComponent(final DeepCopyPlan plan, final int index, final Object value)
+				throws IllegalAccessException, InvocationTargetException {
+			final DeepCopyPlan elementPlan = DeepCopyPlan.forClass(plan.recordClass(index));
+			switch (plan.kind(index)) {
+			case DeepCopyPlan.RECORD:
+				return copy(elementPlan, value);
+			case DeepCopyPlan.ARRAY:
+				final Collection<?> elements = value instanceof Object[] ? Arrays.asList((Object[]) value)
+						: value instanceof Collection ? (Collection<?>) value : null;
+				if (elements == null) {
+					return value;
+				}
+				final Object[] array = (Object[]) Array.newInstance(plan.recordClass(index), elements.size());
+				int i = 0;
+				for (final Object element : elements) {
+					array[i++] = copyElement(elementPlan, element);
+				}
+				return array;
+			case DeepCopyPlan.LIST:
+				if (!(value instanceof Iterable)) {
+					return value;
+				}
+				final List<Object> list = value instanceof Collection
+						? new ArrayList<Object>(((Collection<?>) value).size())
+						: new ArrayList<Object>();
+				for (final Object element : (Iterable<?>) value) {
+					list.add(copyElement(elementPlan, element));
+				}
+				return list;
+			default:
+				if (!(value instanceof Map)) {
+					return value;
+				}
+				final Map<?, ?> origMap = (Map<?, ?>) value;
+				final Map<Object, Object> map = new LinkedHashMap<Object, Object>(
+						(int) (origMap.size() / 0.75f) + 1);
+				for (final Map.Entry<?, ?> entry : origMap.entrySet()) {
+					map.put(entry.getKey(), copyElement(elementPlan, entry.getValue()));
+				}
+				return map;
+			}
+		}
+
+		private Object copyElement(final DeepCopyPlan plan, final Object element)
+				throws IllegalAccessException, InvocationTargetException {
+			return element != null ? copy(plan, element) : null;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Create a record of the class of the specified record, with the specified
+	 * components changed and every other component unchanged.
+	 * </p>
+	 *
+	 * <p>
+	 * The changes are resolved through the cached components of the record class,
+	 * then the unchanged components are read through their accessors and passed
+	 * to the canonical constructor as they are, in a single pass: the new record
+	 * shares their references with the original one. Changed values are not
+	 * converted.
+	 * </p>
+	 *
+	 * @param <T>     Record type
+	 * @param record  Record to derive the new record from
+	 * @param changes Map keyed by the names of the components to change, with
+	 *                their new values
+	 * @return the new record, or <code>record</code> itself if there are no
+	 *         changes
+	 *
+	 * @throws IllegalArgumentException  if <code>record</code> is null or is not
+	 *                                   a record, if a change does not name a
+	 *                                   component or if a value does not match
+	 *                                   the type of its component
+	 * @throws InvocationTargetException if a component accessor throws an
+	 *                                   exception
+	 */
+	public <T> T with(final T record, final Map<String, ? extends Object> changes)
+			throws InvocationTargetException {
+		if (record == null) {
+			throw new IllegalArgumentException("No origin bean specified");
+		}
+		final RecordMetadata metadata = recordMetadata(record.getClass());
+		if (changes == null || changes.isEmpty()) {
+			return record;
+		}
+		final Object[] args = new Object[metadata.size()];
+		final boolean[] changed = new boolean[args.length];
+		for (final Map.Entry<String, ? extends Object> change : changes.entrySet()) {
+			final RecordMetadata.Component component = metadata.component(change.getKey());
+			if (component == null) {
+				throw new IllegalArgumentException("No component '" + change.getKey() + "' in record class '"
+						+ metadata.recordClass().getName() + "'");
+			}
+			args[component.index] = change.getValue();
+			changed[component.index] = true;
+		}
+		final RecordMetadata.Component[] components = metadata.components();
+		for (int index = 0; index < components.length; index++) {
+			if (!changed[index]) {
+				try {
+					args[index] = components[index].reader.apply(record);
+				} catch (final Throwable e) {
+					throw new InvocationTargetException(e);
+				}
+			}
+		}
+		@SuppressWarnings("unchecked")
+		final T newRecord = (T) metadata.newInstance(args);
+		return newRecord;
+	}
+
+	/**
+	 * <p>
+	 * Create a record of the specified class from the components with the same
+	 * names of the specified record.
+	 * </p>
+	 *
+	 * <p>
+	 * The components of the two record classes are matched once per pair of
+	 * classes. Values of components whose class is assignable are passed to the
+	 * canonical constructor as they are, so both records share their
+	 * references; the other values are converted to the component class by this
+	 * instance. Components without a counterpart receive their default value. A
+	 * {@link RecordCopier} generated for the pair is used if there is one.
+	 * </p>
+	 *
+	 * @param <T>         Record type
+	 * @param recordClass Record class to create
+	 * @param record      Record to copy
+	 * @return the new record
+	 *
+	 * @throws IllegalArgumentException  if an argument is null, if
+	 *                                   <code>recordClass</code> or the class of
+	 *                                   <code>record</code> is not a record class
+	 *                                   or if a converted value does not match
+	 *                                   the type of its component
+	 * @throws InvocationTargetException if a component accessor throws an
+	 *                                   exception
+	 */
+	public <T> T copyRecord(final Class<T> recordClass, final Object record) throws InvocationTargetException {
+		if (recordClass == null) {
+			throw new IllegalArgumentException("No destination bean specified");
+		}
+		if (record == null) {
+			throw new IllegalArgumentException("No origin bean specified");
+		}
+		final RecordMetadata metadata = recordMetadata(recordClass);
+		final RecordMetadata origMetadata = recordMetadata(record.getClass());
+		final ConcurrentMap<Class<?>, RecordCopyPlan> plans = recordCopyPlans.get(origMetadata.recordClass());
+		RecordCopyPlan plan = plans.get(recordClass);
+		if (plan == null) {
+			plan = new RecordCopyPlan(metadata, origMetadata);
+			final RecordCopyPlan existing = plans.putIfAbsent(recordClass, plan);
+			if (existing != null) {
+				plan = existing;
+			}
+		}
+		return recordClass.cast(plan.copy(record, this));
+	}
+
+	/**
+	 * <p>
+	 * Return a read-only <code>Map</code> view of the specified record, keyed by
+	 * component name.
+	 * </p>
+	 *
+	 * <p>
+	 * Unlike {@link #describe(Object)} and {@link BeanMap}, nothing is copied
+	 * or converted: keys are resolved through the cached components of the
+	 * record class, and values are read through the component accessors when
+	 * they are looked up or iterated, in declaration order. Creating the view
+	 * allocates a single object.
+	 * </p>
+	 *
+	 * @param record Record to view
+	 * @return the unmodifiable view
+	 *
+	 * @throws IllegalArgumentException if <code>record</code> is null or is not a
+	 *                                  record
+	 */
+	public Map<String, Object> asMap(final Object record) {
+		if (record == null) {
+			throw new IllegalArgumentException("No bean specified");
+		}
+		return new RecordMap(recordMetadata(record.getClass()), record);
+	}
+
+	/**
+	 * <p>
+	 * Create one record of the specified class per origin bean, with the
+	 * semantics of {@link #copyProperties(Class, Object, Map)} without
+	 * overrides.
+	 * </p>
+	 *
+	 * <p>
+	 * The record metadata is resolved once for the whole batch and the plan once
+	 * per run of origins of the same class, and every record is created from the
+	 * same constructor argument buffer, so the cost per origin is limited to the
+	 * property reads and the constructor call.
+	 * </p>
+	 *
+	 * @param <T>         Record type
+	 * @param recordClass Record class to create
+	 * @param origins     Origin beans whose properties are retrieved
+	 * @return the records, in the iteration order of <code>origins</code>
+	 *
+	 * @throws IllegalAccessException    if the caller does not have access to the
+	 *                                   property accessor method
+	 * @throws IllegalArgumentException  if an argument or an origin is null, if
+	 *                                   <code>recordClass</code> is not a record
+	 *                                   class or if a property does not match the
+	 *                                   type of its component
+	 * @throws InvocationTargetException if the property accessor method throws an
+	 *                                   exception
+	 */
+	public <T> List<T> copyAll(final Class<T> recordClass, final Iterable<?> origins)
+			throws IllegalAccessException, InvocationTargetException {
+		if (recordClass == null) {
+			throw new IllegalArgumentException("No destination bean specified");
+		}
+		if (origins == null) {
+			throw new IllegalArgumentException("No origin beans specified");
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("BeanUtils.copyAll(" + recordClass + ", " + origins + ")");
+		}
+		final RecordBatch batch = new RecordBatch(recordMetadata(recordClass));
+		final List<T> records = origins instanceof Collection ? new ArrayList<T>(((Collection<?>) origins).size())
+				: new ArrayList<T>();
+		for (final Object orig : origins) {
+			records.add(recordClass.cast(batch.copy(orig)));
+		}
+		return records;
+	}
+
+	/**
+	 * <p>
+	 * Create one record of the specified class per origin bean, with the
+	 * semantics of {@link #copyProperties(Class, Object, Map)} without
+	 * overrides.
+	 * </p>
+	 *
+	 * <p>
+	 * Array variant of {@link #copyAll(Class, Iterable)}.
+	 * </p>
+	 *
+	 * @param <T>         Record type
+	 * @param recordClass Record class to create
+	 * @param origins     Origin beans whose properties are retrieved
+	 * @return the records, in the order of <code>origins</code>
+	 *
+	 * @throws IllegalAccessException    if the caller does not have access to the
+	 *                                   property accessor method
+	 * @throws IllegalArgumentException  if an argument or an origin is null, if
+	 *                                   <code>recordClass</code> is not a record
+	 *                                   class or if a property does not match the
+	 *                                   type of its component
+	 * @throws InvocationTargetException if the property accessor method throws an
+	 *                                   exception
+	 */
+	public <T> T[] copyAll(final Class<T> recordClass, final Object[] origins)
+			throws IllegalAccessException, InvocationTargetException {
+		if (recordClass == null) {
+			throw new IllegalArgumentException("No destination bean specified");
+		}
+		if (origins == null) {
+			throw new IllegalArgumentException("No origin beans specified");
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("BeanUtils.copyAll(" + recordClass + ", " + origins.length + " origins)");
+		}
+		final RecordBatch batch = new RecordBatch(recordMetadata(recordClass));
+		@SuppressWarnings("unchecked")
+		final T[] records = (T[]) Array.newInstance(recordClass, origins.length);
+		for (int i = 0; i < origins.length; i++) {
+			records[i] = recordClass.cast(batch.copy(origins[i]));
+		}
+		return records;
+	}
+
+	/**
+	 * <p>
+	 * Create one record of the specified class per origin bean on the specified
+	 * pool, with the semantics of {@link #copyAll(Class, Iterable)}.
+	 * </p>
+	 *
+	 * <p>
+	 * The origins are split with their {@link Spliterator} into chunks copied by
+	 * fork/join tasks, each writing its records at the position of its origins,
+	 * so the order of the origins is kept. Within a task records are created as
+	 * by {@link #copyAll(Class, Iterable)}. The shared caches are read without
+	 * locking: plans and converters are resolved through <code>ClassValue</code>s
+	 * and concurrent maps, once per task at most.
+	 * </p>
+	 *
+	 * <p>
+	 * If a copy fails, the remaining chunks are abandoned and the first failure
+	 * is thrown.
+	 * </p>
+	 *
+	 * @param <T>         Record type
+	 * @param recordClass Record class to create
+	 * @param origins     Origin beans whose properties are retrieved
+	 * @param pool        Pool running the copies
+	 * @return a fixed-size list of the records, in the iteration order of
+	 *         <code>origins</code>
+	 *
+	 * @throws IllegalAccessException    if the caller does not have access to the
+	 *                                   property accessor method
+	 * @throws IllegalArgumentException  if an argument or an origin is null, if
+	 *                                   <code>recordClass</code> is not a record
+	 *                                   class or if a property does not match the
+	 *                                   type of its component
+	 * @throws InvocationTargetException if the property accessor method throws an
+	 *                                   exception
+	 */
+	public <T> List<T> parallelCopyAll(final Class<T> recordClass, final Collection<?> origins,
+			final ForkJoinPool pool) throws IllegalAccessException, InvocationTargetException {
+		if (recordClass == null) {
+			throw new IllegalArgumentException("No destination bean specified");
+		}
+		if (origins == null) {
+			throw new IllegalArgumentException("No origin beans specified");
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("BeanUtils.parallelCopyAll(" + recordClass + ", " + origins.size() + " origins)");
+		}
+		return parallelCreate(recordMetadata(recordClass), null, origins, pool);
+	}
+
+	/**
+	 * <p>
+	 * Return an iterator creating one record of the specified class per
+	 * remaining row of the specified result set.
+	 * </p>
+	 *
+	 * <p>
+	 * Column labels are matched to component names, ignoring case, once; every
+	 * row is then read by column index, with the typed getter of each primitive
+	 * component (<code>getInt</code>, <code>getLong</code>, ...) and with
+	 * <code>getObject</code> for the others, converted by this instance when the
+	 * value does not have the component type. Components without a column
+	 * receive their default value. Rows are read as the iterator advances, and
+	 * an <code>SQLException</code> is rethrown wrapped in a
+	 * <code>RuntimeException</code>. The result set is not closed.
+	 * </p>
+	 *
+	 * @param <T>         Record type
+	 * @param recordClass Record class to create
+	 * @param resultSet   Result set positioned before its first row to map
+	 * @return the record iterator
+	 *
+	 * @throws IllegalArgumentException if an argument is null or if
+	 *                                  <code>recordClass</code> is not a record
+	 *                                  class
+	 * @throws SQLException             if the result set metadata cannot be read
+	 */
+	public <T> Iterator<T> resultSetIterator(final Class<T> recordClass, final ResultSet resultSet)
+			throws SQLException {
+		if (recordClass == null) {
+			throw new IllegalArgumentException("No destination bean specified");
+		}
+		if (resultSet == null) {
+			throw new IllegalArgumentException("No result set specified");
+		}
+		return new ResultSetRecordIterator<T>(this, recordClass, recordMetadata(recordClass), resultSet);
+	}
+
+	/**
+	 * <p>
+	 * Return a sequential, lazy stream of one record of the specified class per
+	 * remaining row of the specified result set, with the semantics of
+	 * {@link #resultSetIterator(Class, ResultSet)}.
+	 * </p>
+	 *
+	 * <p>
+	 * Closing the stream does not close the result set.
+	 * </p>
+	 *
+	 * @param <T>         Record type
+	 * @param recordClass Record class to create
+	 * @param resultSet   Result set positioned before its first row to map
+	 * @return the record stream
+	 *
+	 * @throws IllegalArgumentException if an argument is null or if
+	 *                                  <code>recordClass</code> is not a record
+	 *                                  class
+	 * @throws SQLException             if the result set metadata cannot be read
+	 */
+	public <T> Stream<T> resultSetStream(final Class<T> recordClass, final ResultSet resultSet)
+			throws SQLException {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(resultSetIterator(recordClass, resultSet),
+				Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	/**
+	 * <p>
+	 * Return an iterator creating one record of the specified class per line of
+	 * the specified delimited UTF-8 file, such as a CSV or TSV file, whose first
+	 * line names the columns.
+	 * </p>
+	 *
+	 * <p>
+	 * The file is memory-mapped and tokenized in place, one bounded window at a
+	 * time. Column names are matched to component names once, and fields are
+	 * converted with the semantics of {@link #populate(Class, Map)}, without a
+	 * map per line. See {@link DelimitedRecordIterator} for the accepted format.
+	 * The file is closed when the iterator is exhausted or closed.
+	 * </p>
+	 *
+	 * @param <T>         Record type
+	 * @param recordClass Record class to create
+	 * @param file        Delimited file to read
+	 * @param delimiter   ASCII field delimiter, such as <code>','</code> or
+	 *                    <code>'\t'</code>
+	 * @return the record iterator
+	 *
+	 * @throws IllegalArgumentException if an argument is null, if
+	 *                                  <code>recordClass</code> is not a record
+	 *                                  class or if the delimiter is not a
+	 *                                  single byte delimiter
+	 * @throws IOException              if the file cannot be opened or mapped
+	 */
+	public <T> DelimitedRecordIterator<T> delimitedIterator(final Class<T> recordClass, final File file,
+			final char delimiter) throws IOException {
+		if (recordClass == null) {
+			throw new IllegalArgumentException("No destination bean specified");
+		}
+		if (file == null) {
+			throw new IllegalArgumentException("No file specified");
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("BeanUtils.delimitedIterator(" + recordClass + ", " + file + ")");
+		}
+		recordMetadata(recordClass);
+		return new DelimitedRecordIterator<T>(recordClass, populatePrograms.get(recordClass), file, delimiter,
+				DelimitedRecordIterator.DEFAULT_WINDOW);
+	}
+
+	/**
+	 * <p>
+	 * Create one record of the specified class per row of the specified
+	 * columns, with the semantics of {@link #populate(Class, Map)} applied to
+	 * every row.
+	 * </p>
+	 *
+	 * <p>
+	 * Each column is bound to its component once, then the canonical constructor
+	 * is called for every row index, without any per-row map. Columns of
+	 * <code>int</code>, <code>long</code> or <code>double</code> values bound to
+	 * components of the same primitive type are read directly from their
+	 * <code>int[]</code>, <code>long[]</code> or <code>double[]</code> array;
+	 * other columns are converted value by value like request parameters.
+	 * Components without a column receive the value of a missing parameter.
+	 * </p>
+	 *
+	 * @param <T>         Record type
+	 * @param recordClass Record class to create
+	 * @param columns     Map keyed by component names, with one array of values
+	 *                    per column, all of the same length
+	 * @return the records, in row order
+	 *
+	 * @throws IllegalArgumentException if an argument is null, if
+	 *                                  <code>recordClass</code> is not a record
+	 *                                  class, if a column is not an array or if
+	 *                                  the columns do not have the same length
+	 */
+	public <T> List<T> populateColumns(final Class<T> recordClass, final Map<String, ? extends Object> columns) {
+		if (recordClass == null) {
+			throw new IllegalArgumentException("No destination bean specified");
+		}
+		if (columns == null) {
+			throw new IllegalArgumentException("No columns specified");
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("BeanUtils.populateColumns(" + recordClass + ", " + columns.keySet() + ")");
+		}
+		recordMetadata(recordClass);
+		@SuppressWarnings("unchecked")
+		final List<T> records = (List<T>) populatePrograms.get(recordClass).populateColumns(columns);
+		return records;
+	}
+
+	/**
+	 * <p>
+	 * Create one record of the specified class per map of request parameters on
+	 * the specified pool, with the semantics of {@link #populate(Class, Map)}.
+	 * </p>
+	 *
+	 * <p>
+	 * The maps are split and the order kept as by
+	 * {@link #parallelCopyAll(Class, Collection, ForkJoinPool)}. The compiled
+	 * populate program is immutable and shared by all the tasks.
+	 * </p>
+	 *
+	 * @param <T>         Record type
+	 * @param recordClass Record class to create
+	 * @param properties  Maps keyed by component names
+	 * @param pool        Pool running the conversions
+	 * @return a fixed-size list of the records, in the iteration order of
+	 *         <code>properties</code>, <code>null</code> for <code>null</code>
+	 *         maps
+	 *
+	 * @throws IllegalArgumentException if an argument is null, if
+	 *                                  <code>recordClass</code> is not a record
+	 *                                  class or if a value does not match the
+	 *                                  type of its component
+	 */
+	public <T> List<T> parallelPopulateAll(final Class<T> recordClass,
+			final Collection<? extends Map<String, ? extends Object>> properties, final ForkJoinPool pool) {
+		if (recordClass == null) {
+			throw new IllegalArgumentException("No destination bean specified");
+		}
+		if (properties == null) {
+			throw new IllegalArgumentException("No properties specified");
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("BeanUtils.parallelPopulateAll(" + recordClass + ", " + properties.size() + " maps)");
+		}
+		final RecordMetadata metadata = recordMetadata(recordClass);
+		try {
+			return parallelCreate(metadata, populatePrograms.get(recordClass), properties, pool);
+		} catch (final IllegalAccessException e) {
+			throw new IllegalStateException(e); // Populate programs do not read beans
+		} catch (final InvocationTargetException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Create the records of a parallel copy or populate, and rethrow the first
+	 * failure.
+	 */
+	private <T> List<T> parallelCreate(final RecordMetadata metadata, final PopulateProgram program,
+			final Collection<?> origins, final ForkJoinPool pool)
+			throws IllegalAccessException, InvocationTargetException {
+		if (pool == null) {
+			throw new IllegalArgumentException("No pool specified");
+		}
+		Spliterator<?> spliterator = origins.spliterator();
+		if (!spliterator.hasCharacteristics(Spliterator.SUBSIZED)) {
+			// Chunk offsets need exact sizes
+			spliterator = new ArrayList<Object>(origins).spliterator();
+		}
+		final int size = (int) spliterator.getExactSizeIfKnown();
+		@SuppressWarnings("unchecked")
+		final T[] records = (T[]) Array.newInstance(metadata.recordClass(), size);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final long threshold = Math.max(1, size / (pool.getParallelism() * 4L));
+		pool.invoke(new ParallelTask(metadata, program, spliterator, 0, threshold, records, failure));
+
+		final Throwable e = failure.get();
+		if (e instanceof IllegalAccessException) {
+			throw (IllegalAccessException) e;
+		} else if (e instanceof InvocationTargetException) {
+			throw (InvocationTargetException) e;
+		} else if (e instanceof RuntimeException) {
+			throw (RuntimeException) e;
+		} else if (e instanceof Error) {
+			throw (Error) e;
+		} else if (e != null) {
+			throw new UndeclaredThrowableException(e);
+		}
+		return Arrays.asList(records);
+	}
+
+	/**
+	 * Fork/join task creating the records of a chunk of origins, at the position
+	 * of each origin in the result array.
+	 */
+	private final class ParallelTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final RecordMetadata metadata;
+
+		/** Program of a parallel populate, <code>null</code> for a copy */
+		private final PopulateProgram program;
+
+		private final Spliterator<?> origins;
+
+		/** Index of the first origin of the chunk */
+		private final int offset;
+
+		/** Size under which a chunk is not split */
+		private final long threshold;
+
+		private final Object[] records;
+
+		private final AtomicReference<Throwable> failure;
+
+		ParallelTask(final RecordMetadata metadata, final PopulateProgram program, final Spliterator<?> origins,
+				final int offset, final long threshold, final Object[] records,
+				final AtomicReference<Throwable> failure) {
+			this.metadata = metadata;
+			this.program = program;
+			this.origins = origins;
+			this.offset = offset;
+			this.threshold = threshold;
+			this.records = records;
+			this.failure = failure;
+		}
+
+		@Override
+		protected void compute() {
+			final List<ParallelTask> forked = new ArrayList<ParallelTask>();
+			int index = offset;
+			Spliterator<?> prefix;
+			while (origins.estimateSize() > threshold && (prefix = origins.trySplit()) != null) {
+				final ParallelTask task = new ParallelTask(metadata, program, prefix, index, threshold, records,
+						failure);
+				// Sized before forking, the task consumes the prefix
+				index += (int) prefix.getExactSizeIfKnown();
+				task.fork();
+				forked.add(task);
+			}
+
+			final Element element = new Element();
+			final RecordBatch batch = program == null ? new RecordBatch(metadata) : null;
+			try {
+				while (failure.get() == null && origins.tryAdvance(element)) {
+					if (batch != null) {
+						records[index++] = batch.copy(element.value);
+					} else {
+						@SuppressWarnings("unchecked")
+						final Map<String, ? extends Object> properties = (Map<String, ? extends Object>) element.value;
+						records[index++] = properties != null ? program.populate(properties) : null;
+					}
+				}
+			} catch (final Throwable e) {
+				failure.compareAndSet(null, e);
+			}
+			for (final ParallelTask task : forked) {
+				task.join();
+			}
+		}
+	}
+
+	/**
+	 * Holder of the element last returned by a spliterator.
+	 */
+	private static final class Element implements Consumer<Object> {
+		Object value;
+
+		@Override
+		public void accept(final Object value) {
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Copy of successive origins to one record class, reusing the plan of the
+	 * previous origin class and a single constructor argument buffer.
+	 */
+	private final class RecordBatch {
+		private final RecordMetadata metadata;
+
+		private Class<?> origClass;
+
+		private RecordPlan plan;
+
+		/** Constructor arguments, unreadable components holding their default */
+		private Object[] args;
+
+		RecordBatch(final RecordMetadata metadata) {
+			this.metadata = metadata;
+		}
+
+		Object copy(final Object orig) throws IllegalAccessException, InvocationTargetException {
+			if (orig == null) {
+				throw new IllegalArgumentException("No origin bean specified");
+			}
+			if (orig instanceof DynaBean || orig instanceof Map) {
+				return copyProperties(metadata.recordClass(), orig, null);
+			}
+			if (orig.getClass() != origClass) {
+				origClass = orig.getClass();
+				plan = getRecordPlan(metadata, origClass);
+				args = metadata.newArguments();
+			}
+			return plan.newRecord(orig, args);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Return a function creating records of the specified class from origin
+	 * beans, with the semantics of {@link #copyProperties(Class, Object, Map)}
+	 * without overrides.
+	 * </p>
+	 *
+	 * <p>
+	 * The function is bound to the record metadata and keeps the plan of every
+	 * origin class it meets, so applying it performs no lookup beyond the first
+	 * origin of each class. It holds no mutable state and can be shared by
+	 * threads, for instance as the argument of <code>Stream.map</code>. Checked
+	 * exceptions are rethrown as the unchecked cause of an
+	 * <code>InvocationTargetException</code>, or wrapped in an
+	 * {@link UndeclaredThrowableException}.
+	 * </p>
+	 *
+	 * @param <T>         Record type
+	 * @param recordClass Record class to create
+	 * @return the mapper function
+	 * @throws IllegalArgumentException if <code>recordClass</code> is null or is
+	 *                                  not a record class
+	 */
+	public <T> Function<Object, T> mapperFor(final Class<T> recordClass) {
+		if (recordClass == null) {
+			throw new IllegalArgumentException("No destination bean specified");
+		}
+		final RecordMetadata metadata = recordMetadata(recordClass);
+		final ClassValue<RecordPlan> plans = new ClassValue<RecordPlan>() {
+			@Override
+			protected RecordPlan computeValue(final Class<?> origClass) {
+				try {
+					return getRecordPlan(metadata, origClass);
+				} catch (final IllegalAccessException e) {
+					throw new UndeclaredThrowableException(e);
+				}
+			}
+		};
+		return new Function<Object, T>() {
+			@Override
+			public T apply(final Object orig) {
+				try {
+					if (orig instanceof DynaBean || orig instanceof Map) {
+						return copyProperties(recordClass, orig, null);
+					} else if (orig == null) {
+						throw new IllegalArgumentException("No origin bean specified");
+					}
+					return recordClass.cast(plans.get(orig.getClass()).newRecord(orig, metadata.newArguments()));
+				} catch (final InvocationTargetException e) {
+					if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
+					} else if (e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					}
+					throw new UndeclaredThrowableException(e.getCause());
+				} catch (final IllegalAccessException e) {
+					throw new UndeclaredThrowableException(e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * <p>
+	 * Return a function creating records of the specified class from maps of
+	 * request parameters, with the semantics of {@link #populate(Class, Map)}.
+	 * </p>
+	 *
+	 * <p>
+	 * The function is bound to the compiled populate program of the record
+	 * class. It holds no mutable state and can be shared by threads.
+	 * </p>
+	 *
+	 * @param <T>         Record type
+	 * @param recordClass Record class to create
+	 * @return the mapper function
+	 * @throws IllegalArgumentException if <code>recordClass</code> is null or is
+	 *                                  not a record class
+	 */
+	public <T> Function<Map<String, ? extends Object>, T> populateMapperFor(final Class<T> recordClass) {
+		if (recordClass == null) {
+			throw new IllegalArgumentException("No destination bean specified");
+		}
+		recordMetadata(recordClass);
+		final PopulateProgram program = populatePrograms.get(recordClass);
+		return new Function<Map<String, ? extends Object>, T>() {
+			@Override
+			public T apply(final Map<String, ? extends Object> properties) {
+				return properties != null ? recordClass.cast(program.populate(properties)) : null;
+			}
+		};
+	}
+
+	/**
+	 * <p>
+	 * Create a record of the specified class from the specified map of request
+	 * parameters, converting String values to the component types.
+	 * </p>
+	 *
+	 * <p>
+	 * Record components that are records themselves can be populated from
+	 * dotted parameter names, such as <code>customer.address.zip</code>. The
+	 * map is scanned once, and every name is matched segment by segment against
+	 * the component names of each record class on its path. The program of a
+	 * nested record class is compiled the first time a name reaches it and is
+	 * reused afterwards, so recursive record classes are populated as deep as
+	 * the names go. A nested record is created when at least one parameter names
+	 * one of its components.
+	 * </p>
+	 *
+	 * @param <T>         Record type
+	 * @param recordClass Record class to create
+	 * @param properties  Map keyed by component names or dotted paths of nested
+	 *                    components, with String, String[] or already converted
+	 *                    values
+	 * @return the new record, or <code>null</code> if <code>properties</code> is
+	 *         null
+	 *
+	 * @throws IllegalArgumentException if <code>recordClass</code> is not a
+	 *                                  record class
+	 */
+	public <T> T populate(final Class<T> recordClass, final Map<String, ? extends Object> properties) {
+		if (properties == null) {
+			return null;
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("BeanUtils.populate(" + recordClass + ", " + properties + ")");
+		}
+		recordMetadata(recordClass);
+		@SuppressWarnings("unchecked")
+		T record = (T) populatePrograms.get(recordClass).populate(properties);
+		return record;
+	}
+
+}
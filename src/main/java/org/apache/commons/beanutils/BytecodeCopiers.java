@@ -0,0 +1,677 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * <p>
+ * Generator of copiers compiled to bytecode for one planned class pair.
+ * </p>
+ *
+ * <p>
+ * The copier is a hidden class defined in the package of the destination class,
+ * implementing {@link RecordCopier.ToBean}. Its <code>copyProperties</code>
+ * method reads every planned property with a direct call to the getter or record
+ * accessor, converts it through the {@link Converter} of the step, held in a
+ * final field, and passes it to the setter, with no loop, no reflection and no
+ * boxing when both ends have the same primitive type. The JIT can inline the
+ * whole copy into its caller. Conversions are bound when the copier is
+ * generated, so its {@link BeanUtilsBeanImpl} argument is ignored.
+ * </p>
+ *
+ * <p>
+ * Failures are reported like {@link CopyPlan#execute(Object, Object)} reports
+ * them: an exception handler wraps whatever a getter or setter throws in an
+ * <code>InvocationTargetException</code>, and a value that does not match the
+ * setter type, such as a <code>null</code> value for a primitive, is handed to a
+ * callback throwing the <code>IllegalArgumentException</code> of the plan.
+ * </p>
+ *
+ * <p>
+ * No copier is generated when the JVM does not support hidden classes (before
+ * Java 15) or when a class or method of the plan is not accessible from the
+ * package of the destination class.
+ * </p>
+ *
+ * @version $Id$
+ * @see CopyPlan
+ */
+final class BytecodeCopiers {
+
+	private static final String OBJECT = "java/lang/Object";
+
+	private static final String FUNCTION = "java/util/function/Function";
+
+	private static final String MISMATCH = "java/util/function/ObjIntConsumer";
+
+	private static final String COPIER = "org/apache/commons/beanutils/RecordCopier$ToBean";
+
+	private static final String BEAN_UTILS = "org/apache/commons/beanutils/BeanUtilsBeanImpl";
+
+	private static final String INVOCATION_TARGET = "java/lang/reflect/InvocationTargetException";
+
+	private static final String THROWABLE = "java/lang/Throwable";
+
+	/**
+	 * Constant pool of the generated class.
+	 */
+	private static final class ConstantPool {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+		private int count = 1;
+
+		int utf8(final String value) throws IOException {
+			Integer index = indexes.get("U" + value);
+			if (index == null) {
+				out.writeByte(1);
+				out.writeUTF(value);
+				index = add("U" + value);
+			}
+			return index;
+		}
+
+		int classRef(final String name) throws IOException {
+			Integer index = indexes.get("C" + name);
+			if (index == null) {
+				final int nameIndex = utf8(name);
+				out.writeByte(7);
+				out.writeShort(nameIndex);
+				index = add("C" + name);
+			}
+			return index;
+		}
+
+		int memberRef(final int tag, final String owner, final String name, final String descriptor)
+				throws IOException {
+			final String key = tag + owner + "." + name + descriptor;
+			Integer index = indexes.get(key);
+			if (index == null) {
+				final int ownerIndex = classRef(owner);
+				final int nameIndex = utf8(name);
+				final int descriptorIndex = utf8(descriptor);
+				Integer nameAndType = indexes.get("N" + name + descriptor);
+				if (nameAndType == null) {
+					out.writeByte(12);
+					out.writeShort(nameIndex);
+					out.writeShort(descriptorIndex);
+					nameAndType = add("N" + name + descriptor);
+				}
+				out.writeByte(tag);
+				out.writeShort(ownerIndex);
+				out.writeShort(nameAndType);
+				index = add(key);
+			}
+			return index;
+		}
+
+		private int add(final String key) {
+			indexes.put(key, count);
+			return count++;
+		}
+	}
+
+	/**
+	 * Buffer whose bytes can be patched in place.
+	 */
+	private static final class Buffer extends ByteArrayOutputStream {
+		void patch(final int offset, final int value) {
+			buf[offset] = (byte) (value >> 8);
+			buf[offset + 1] = (byte) value;
+		}
+	}
+
+	/**
+	 * Code of one method, with its exception table and stack map frames.
+	 */
+	private static final class Code extends DataOutputStream {
+		private final ByteArrayOutputStream handlerBytes = new ByteArrayOutputStream();
+		private final DataOutputStream handlers = new DataOutputStream(handlerBytes);
+		private final ByteArrayOutputStream frameBytes = new ByteArrayOutputStream();
+		private final DataOutputStream frames = new DataOutputStream(frameBytes);
+		private int frameCount;
+		private int lastFrame = -1;
+
+		Code() {
+			super(new Buffer());
+		}
+
+		/**
+		 * Write a branch instruction whose target is bound later.
+		 *
+		 * @return the offset of the instruction
+		 */
+		int branch(final int opcode) throws IOException {
+			final int offset = size();
+			writeByte(opcode);
+			writeShort(0);
+			return offset;
+		}
+
+		/**
+		 * Make the branch at <code>offset</code> jump to the current offset.
+		 */
+		void bind(final int offset) {
+			((Buffer) out).patch(offset + 1, size() - offset);
+		}
+
+		/**
+		 * Add a handler of <code>type</code> exceptions thrown in
+		 * <code>[start, end)</code>.
+		 */
+		void handler(final int start, final int end, final int handler, final int type) throws IOException {
+			handlers.writeShort(start);
+			handlers.writeShort(end);
+			handlers.writeShort(handler);
+			handlers.writeShort(type);
+		}
+
+		/**
+		 * Add a full stack map frame at the current offset, whose locals and stack
+		 * items are all classes of the constant pool.
+		 */
+		void frame(final int[] locals, final int... stack) throws IOException {
+			frames.writeByte(255); // full_frame
+			frames.writeShort(size() - lastFrame - 1);
+			for (final int[] types : new int[][] { locals, stack }) {
+				frames.writeShort(types.length);
+				for (final int type : types) {
+					frames.writeByte(7); // Object_variable_info
+					frames.writeShort(type);
+				}
+			}
+			lastFrame = size();
+			frameCount++;
+		}
+
+		/**
+		 * Write the <code>Code</code> attribute of this code.
+		 */
+		void writeTo(final DataOutputStream method, final int code, final int stackMapTable, final int maxStack,
+				final int maxLocals) throws IOException {
+			final int frameLength = frameCount > 0 ? 8 + frameBytes.size() : 0;
+			method.writeShort(code);
+			method.writeInt(12 + size() + handlerBytes.size() + frameLength);
+			method.writeShort(maxStack);
+			method.writeShort(maxLocals);
+			method.writeInt(size());
+			((Buffer) out).writeTo(method);
+			method.writeShort(handlerBytes.size() / 8);
+			handlerBytes.writeTo(method);
+			if (frameCount > 0) {
+				method.writeShort(1);
+				method.writeShort(stackMapTable);
+				method.writeInt(2 + frameBytes.size());
+				method.writeShort(frameCount);
+				frameBytes.writeTo(method);
+			} else {
+				method.writeShort(0); // attributes
+			}
+		}
+	}
+
+	private BytecodeCopiers() {
+	}
+
+	/**
+	 * Generate the copier of a plan.
+	 *
+	 * @param destClass Destination class of the plan
+	 * @param origClass Origin class of the plan
+	 * @param steps     Steps of the plan
+	 * @return the copier, or <code>null</code> if no copier can be generated
+	 */
+	static RecordCopier.ToBean<Object, Object> spin(final Class<?> destClass, final Class<?> origClass,
+			final CopyPlan.Step[] steps) {
+		final MethodHandles.Lookup lookup = RecordSupport.lookup(destClass);
+		final Class<?> host = lookup.lookupClass();
+		if (!isAccessible(host, destClass) || !isAccessible(host, origClass)
+				|| !isAccessible(host, RecordCopier.ToBean.class) || !isAccessible(host, BeanUtilsBeanImpl.class)) {
+			return null;
+		}
+		for (final CopyPlan.Step step : steps) {
+			if (!isAccessible(host, step.getter) || !isAccessible(host, step.setter)) {
+				return null;
+			}
+		}
+		final Object[] fields = new Object[steps.length + 1];
+		for (int i = 0; i < steps.length; i++) {
+			if (steps[i].converter != null) {
+				fields[i] = ConverterCache.conversion(steps[i].converter, steps[i].type);
+			}
+		}
+		fields[steps.length] = new ObjIntConsumer<Object>() {
+			@Override
+			public void accept(final Object value, final int index) {
+				throw CopyPlan.mismatch(destClass, steps[index], value);
+			}
+		};
+		try {
+			final MethodHandles.Lookup copier = RecordSupport.defineHiddenClass(lookup,
+					generate(host, destClass, origClass, steps));
+			if (copier == null) {
+				return null;
+			}
+			@SuppressWarnings("unchecked")
+			final RecordCopier.ToBean<Object, Object> instance = (RecordCopier.ToBean<Object, Object>) copier
+					.findConstructor(copier.lookupClass(), MethodType.methodType(void.class, Object[].class))
+					.invoke(fields);
+			return instance;
+		} catch (final Throwable e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Return <code>true</code> if the value read by <code>step</code> must be
+	 * checked against the setter type before it is passed to the setter.
+	 */
+	private static boolean isChecked(final CopyPlan.Step step, final Class<?> from, final Class<?> to) {
+		if (step.converter != null) {
+			return to != Object.class;
+		} else if (to.isPrimitive()) {
+			return from != to;
+		}
+		return !to.isAssignableFrom(ConvertUtils.primitiveToWrapper(from));
+	}
+
+	/**
+	 * Generate the class file of the copier.
+	 */
+	private static byte[] generate(final Class<?> host, final Class<?> destClass, final Class<?> origClass,
+			final CopyPlan.Step[] steps) throws IOException {
+		final ConstantPool pool = new ConstantPool();
+		final String className = internalName(host) + "$$BeanUtilsCopier";
+		final int thisClass = pool.classRef(className);
+		final int superClass = pool.classRef(OBJECT);
+		final int copier = pool.classRef(COPIER);
+		final int object = pool.classRef(OBJECT);
+		final int beanUtils = pool.classRef(BEAN_UTILS);
+		final int throwable = pool.classRef(THROWABLE);
+		final String functionDescriptor = "L" + FUNCTION + ";";
+		final String mismatchDescriptor = "L" + MISMATCH + ";";
+
+		// Constructor: store each conversion and the mismatch callback in their own
+		// final fields
+		final Code init = new Code();
+		init.writeByte(0x2a); // aload_0
+		init.writeByte(0xb7); // invokespecial
+		init.writeShort(pool.memberRef(10, OBJECT, "<init>", "()V"));
+		int fields = 1;
+		for (int i = 0; i < steps.length; i++) {
+			if (steps[i].converter == null) {
+				continue;
+			}
+			fields++;
+			init.writeByte(0x2a); // aload_0
+			init.writeByte(0x2b); // aload_1
+			init.writeByte(0x11); // sipush
+			init.writeShort(i);
+			init.writeByte(0x32); // aaload
+			init.writeByte(0xc0); // checkcast
+			init.writeShort(pool.classRef(FUNCTION));
+			init.writeByte(0xb5); // putfield
+			init.writeShort(pool.memberRef(9, className, "c" + i, functionDescriptor));
+		}
+		init.writeByte(0x2a); // aload_0
+		init.writeByte(0x2b); // aload_1
+		init.writeByte(0x11); // sipush
+		init.writeShort(steps.length);
+		init.writeByte(0x32); // aaload
+		init.writeByte(0xc0); // checkcast
+		init.writeShort(pool.classRef(MISMATCH));
+		init.writeByte(0xb5); // putfield
+		init.writeShort(pool.memberRef(9, className, "mismatch", mismatchDescriptor));
+		init.writeByte(0xb1); // return
+
+		// copyProperties(Object dest, Object orig, BeanUtilsBeanImpl beanUtils): one
+		// read, conversion, check and write per step, the value being kept in local 4
+		final int[] locals = { thisClass, object, object, beanUtils };
+		final int[] valueLocals = { thisClass, object, object, beanUtils, object };
+		final Code copy = new Code();
+		final int[][] ranges = new int[steps.length * 2][];
+		int rangeCount = 0;
+		for (int i = 0; i < steps.length; i++) {
+			final Method getter = steps[i].getter;
+			final Method setter = steps[i].setter;
+			final Class<?> from = getter.getReturnType();
+			final Class<?> to = setter.getParameterTypes()[0];
+			final int start = copy.size();
+			if (steps[i].converter == null && !isChecked(steps[i], from, to)) {
+				// Read and write in a single expression
+				copy.writeByte(0x2b); // aload_1
+				checkcast(copy, pool, Object.class, setter.getDeclaringClass());
+				copy.writeByte(0x2c); // aload_2
+				checkcast(copy, pool, Object.class, getter.getDeclaringClass());
+				invoke(copy, pool, getter);
+				if (from != to) {
+					box(copy, pool, from);
+				}
+				invoke(copy, pool, setter);
+				ranges[rangeCount++] = new int[] { start, copy.size() };
+			} else {
+				copy.writeByte(0x2c); // aload_2
+				checkcast(copy, pool, Object.class, getter.getDeclaringClass());
+				invoke(copy, pool, getter);
+				ranges[rangeCount++] = new int[] { start, copy.size() };
+				box(copy, pool, from);
+				copy.writeByte(0x3a); // astore
+				copy.writeByte(4);
+				if (steps[i].converter != null) {
+					copy.writeByte(0x2a); // aload_0
+					copy.writeByte(0xb4); // getfield
+					copy.writeShort(pool.memberRef(9, className, "c" + i, functionDescriptor));
+					copy.writeByte(0x19); // aload
+					copy.writeByte(4);
+					copy.writeByte(0xb9); // invokeinterface
+					copy.writeShort(
+							pool.memberRef(11, FUNCTION, "apply", "(Ljava/lang/Object;)Ljava/lang/Object;"));
+					copy.writeByte(2);
+					copy.writeByte(0);
+					copy.writeByte(0x3a); // astore
+					copy.writeByte(4);
+				}
+				if (isChecked(steps[i], from, to)) {
+					int isNull = -1;
+					if (!to.isPrimitive()) {
+						copy.writeByte(0x19); // aload
+						copy.writeByte(4);
+						isNull = copy.branch(0xc6); // ifnull
+					}
+					copy.writeByte(0x19); // aload
+					copy.writeByte(4);
+					copy.writeByte(0xc1); // instanceof
+					copy.writeShort(pool.classRef(internalName(ConvertUtils.primitiveToWrapper(to))));
+					final int matches = copy.branch(0x9a); // ifne
+					copy.writeByte(0x2a); // aload_0
+					copy.writeByte(0xb4); // getfield
+					copy.writeShort(pool.memberRef(9, className, "mismatch", mismatchDescriptor));
+					copy.writeByte(0x19); // aload
+					copy.writeByte(4);
+					copy.writeByte(0x11); // sipush
+					copy.writeShort(i);
+					copy.writeByte(0xb9); // invokeinterface
+					copy.writeShort(pool.memberRef(11, MISMATCH, "accept", "(Ljava/lang/Object;I)V"));
+					copy.writeByte(3);
+					copy.writeByte(0);
+					copy.writeByte(0x01); // aconst_null, the callback always throws
+					copy.writeByte(0xbf); // athrow
+					if (isNull >= 0) {
+						copy.bind(isNull);
+					}
+					copy.bind(matches);
+					copy.frame(valueLocals);
+				}
+				final int write = copy.size();
+				copy.writeByte(0x2b); // aload_1
+				checkcast(copy, pool, Object.class, setter.getDeclaringClass());
+				copy.writeByte(0x19); // aload
+				copy.writeByte(4);
+				coerce(copy, pool, Object.class, to);
+				invoke(copy, pool, setter);
+				ranges[rangeCount++] = new int[] { write, copy.size() };
+			}
+			final Class<?> result = setter.getReturnType();
+			if (result == long.class || result == double.class) {
+				copy.writeByte(0x58); // pop2
+			} else if (result != void.class) {
+				copy.writeByte(0x57); // pop
+			}
+		}
+		copy.writeByte(0xb1); // return
+		// Getter and setter failures: throw new InvocationTargetException(e)
+		final int wrap = copy.size();
+		copy.frame(locals, throwable);
+		copy.writeByte(0xbb); // new
+		copy.writeShort(pool.classRef(INVOCATION_TARGET));
+		copy.writeByte(0x5a); // dup_x1
+		copy.writeByte(0x5f); // swap
+		copy.writeByte(0xb7); // invokespecial
+		copy.writeShort(pool.memberRef(10, INVOCATION_TARGET, "<init>", "(Ljava/lang/Throwable;)V"));
+		copy.writeByte(0xbf); // athrow
+		for (int i = 0; i < rangeCount; i++) {
+			copy.handler(ranges[i][0], ranges[i][1], wrap, throwable);
+		}
+
+		// getOriginType() and getDestinationType()
+		final Code originType = new Code();
+		originType.writeByte(0x13); // ldc_w
+		originType.writeShort(pool.classRef(internalName(origClass)));
+		originType.writeByte(0xb0); // areturn
+		final Code destinationType = new Code();
+		destinationType.writeByte(0x13); // ldc_w
+		destinationType.writeShort(pool.classRef(internalName(destClass)));
+		destinationType.writeByte(0xb0); // areturn
+
+		final int code = pool.utf8("Code");
+		final int stackMapTable = pool.utf8("StackMapTable");
+		final int functionType = pool.utf8(functionDescriptor);
+		final int mismatchName = pool.utf8("mismatch");
+		final int mismatchType = pool.utf8(mismatchDescriptor);
+		final int[] fieldNames = new int[steps.length];
+		for (int i = 0; i < steps.length; i++) {
+			if (steps[i].converter != null) {
+				fieldNames[i] = pool.utf8("c" + i);
+			}
+		}
+		final int initName = pool.utf8("<init>");
+		final int initType = pool.utf8("([Ljava/lang/Object;)V");
+		final int copyName = pool.utf8("copyProperties");
+		final int copyType = pool.utf8("(Ljava/lang/Object;Ljava/lang/Object;L" + BEAN_UTILS + ";)V");
+		final int originName = pool.utf8("getOriginType");
+		final int destinationName = pool.utf8("getDestinationType");
+		final int typeType = pool.utf8("()Ljava/lang/Class;");
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0);
+		out.writeShort(52); // Java 8
+		out.writeShort(pool.count);
+		pool.out.flush();
+		pool.bytes.writeTo(out);
+		out.writeShort(0x1031); // public final super synthetic
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(1);
+		out.writeShort(copier);
+
+		out.writeShort(fields);
+		for (int i = 0; i < steps.length; i++) {
+			if (steps[i].converter != null) {
+				writeField(out, fieldNames[i], functionType);
+			}
+		}
+		writeField(out, mismatchName, mismatchType);
+
+		out.writeShort(4);
+		writeMethod(out, code, stackMapTable, initName, initType, 3, 2, init);
+		writeMethod(out, code, stackMapTable, copyName, copyType, 4, 5, copy);
+		writeMethod(out, code, stackMapTable, originName, typeType, 1, 1, originType);
+		writeMethod(out, code, stackMapTable, destinationName, typeType, 1, 1, destinationType);
+		out.writeShort(0);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static void writeField(final DataOutputStream out, final int name, final int descriptor)
+			throws IOException {
+		out.writeShort(0x1012); // private final synthetic
+		out.writeShort(name);
+		out.writeShort(descriptor);
+		out.writeShort(0);
+	}
+
+	private static void writeMethod(final DataOutputStream out, final int code, final int stackMapTable,
+			final int name, final int descriptor, final int maxStack, final int maxLocals, final Code body)
+			throws IOException {
+		out.writeShort(0x0001); // public
+		out.writeShort(name);
+		out.writeShort(descriptor);
+		out.writeShort(1);
+		body.writeTo(out, code, stackMapTable, maxStack, maxLocals);
+	}
+
+	private static void invoke(final DataOutputStream code, final ConstantPool pool, final Method method)
+			throws IOException {
+		final StringBuilder descriptor = new StringBuilder("(");
+		for (final Class<?> parameter : method.getParameterTypes()) {
+			descriptor.append(descriptor(parameter));
+		}
+		descriptor.append(')').append(descriptor(method.getReturnType()));
+		final Class<?> owner = method.getDeclaringClass();
+		if (owner.isInterface()) {
+			code.writeByte(0xb9); // invokeinterface
+			code.writeShort(pool.memberRef(11, internalName(owner), method.getName(), descriptor.toString()));
+			code.writeByte(1 + slots(method.getParameterTypes()));
+			code.writeByte(0);
+		} else {
+			code.writeByte(0xb6); // invokevirtual
+			code.writeShort(pool.memberRef(10, internalName(owner), method.getName(), descriptor.toString()));
+		}
+	}
+
+	/**
+	 * Box the primitive value on top of the stack.
+	 */
+	private static void box(final DataOutputStream code, final ConstantPool pool, final Class<?> type)
+			throws IOException {
+		if (type.isPrimitive()) {
+			final Class<?> wrapper = ConvertUtils.primitiveToWrapper(type);
+			code.writeByte(0xb8); // invokestatic
+			code.writeShort(pool.memberRef(10, internalName(wrapper), "valueOf",
+					"(" + descriptor(type) + ")" + descriptor(wrapper)));
+		}
+	}
+
+	/**
+	 * Turn the reference on top of the stack, of static type <code>from</code>,
+	 * into a <code>to</code> value, unboxing primitives.
+	 */
+	private static void coerce(final DataOutputStream code, final ConstantPool pool, final Class<?> from,
+			final Class<?> to) throws IOException {
+		if (to.isPrimitive()) {
+			final Class<?> wrapper = ConvertUtils.primitiveToWrapper(to);
+			checkcast(code, pool, from, wrapper);
+			code.writeByte(0xb6); // invokevirtual
+			code.writeShort(pool.memberRef(10, internalName(wrapper), to.getName() + "Value", "()" + descriptor(to)));
+		} else {
+			checkcast(code, pool, from, to);
+		}
+	}
+
+	private static void checkcast(final DataOutputStream code, final ConstantPool pool, final Class<?> from,
+			final Class<?> to) throws IOException {
+		if (!to.isAssignableFrom(from)) {
+			code.writeByte(0xc0); // checkcast
+			code.writeShort(pool.classRef(internalName(to)));
+		}
+	}
+
+	private static int slots(final Class<?>[] types) {
+		int slots = 0;
+		for (final Class<?> type : types) {
+			slots += type == long.class || type == double.class ? 2 : 1;
+		}
+		return slots;
+	}
+
+	private static String internalName(final Class<?> type) {
+		return type.getName().replace('.', '/');
+	}
+
+	private static String descriptor(final Class<?> type) {
+		if (type.isPrimitive()) {
+			if (type == void.class) {
+				return "V";
+			} else if (type == boolean.class) {
+				return "Z";
+			} else if (type == long.class) {
+				return "J";
+			}
+			return String.valueOf(Character.toUpperCase(type.getName().charAt(0)));
+		}
+		return type.isArray() ? internalName(type) : "L" + internalName(type) + ";";
+	}
+
+	/**
+	 * Return <code>true</code> if code in the package of <code>host</code> can
+	 * call <code>method</code>.
+	 */
+	private static boolean isAccessible(final Class<?> host, final Method method) {
+		final int modifiers = method.getModifiers();
+		if (Modifier.isStatic(modifiers) || !isAccessible(host, method.getDeclaringClass())
+				|| !isAccessible(host, method.getReturnType())) {
+			return false;
+		}
+		if (!Modifier.isPublic(modifiers)
+				&& (Modifier.isPrivate(modifiers) || !isSamePackage(host, method.getDeclaringClass()))) {
+			return false;
+		}
+		for (final Class<?> parameter : method.getParameterTypes()) {
+			if (!isAccessible(host, parameter)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return <code>true</code> if code in the package of <code>host</code> can
+	 * refer to <code>type</code>.
+	 */
+	private static boolean isAccessible(final Class<?> host, Class<?> type) {
+		while (type.isArray()) {
+			type = type.getComponentType();
+		}
+		if (type.isPrimitive()) {
+			return true;
+		}
+		if (!Modifier.isPublic(type.getModifiers()) && !isSamePackage(host, type)) {
+			return false;
+		}
+		try {
+			return Class.forName(type.getName(), false, host.getClassLoader()) == type;
+		} catch (final ClassNotFoundException e) {
+			return false;
+		} catch (final LinkageError e) {
+			return false;
+		}
+	}
+
+	private static boolean isSamePackage(final Class<?> first, final Class<?> second) {
+		if (first.getClassLoader() != second.getClassLoader()) {
+			return false;
+		}
+		final String firstName = first.getName();
+		final String secondName = second.getName();
+		return firstName.substring(0, Math.max(firstName.lastIndexOf('.'), 0))
+				.equals(secondName.substring(0, Math.max(secondName.lastIndexOf('.'), 0)));
+	}
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import org.apache.commons.beanutils.converters.AbstractConverter;
+import org.apache.commons.beanutils.converters.ConverterFacade;
+
+/**
+ * <p>
+ * Cache of the conversions of one {@link ConvertUtilsBean}, keyed by the
+ * runtime class of the value and then by the target type.
+ * </p>
+ *
+ * <p>
+ * A conversion is resolved once per pair of classes: either the
+ * {@link Converter} registered for the target type, or the identity when no
+ * converter is registered or when a standard converter would return a value of
+ * the target type unchanged. Values of the target type then skip conversion
+ * entirely.
+ * </p>
+ *
+ * @version $Id$
+ * @see BeanUtilsBeanImpl#convert(Object, Class)
+ */
+final class ConverterCache {
+
+	/** Conversion returning its argument */
+	static final Function<Object, Object> IDENTITY = new Function<Object, Object>() {
+		@Override
+		public Object apply(final Object value) {
+			return value;
+		}
+	};
+
+	/**
+	 * Conversion by a registered converter, skipping <code>null</code> values.
+	 */
+	private static final class Conversion implements Function<Object, Object> {
+		private final Converter converter;
+		private final Class<?> type;
+
+		Conversion(final Converter converter, final Class<?> type) {
+			this.converter = converter;
+			this.type = type;
+		}
+
+		@Override
+		public Object apply(final Object value) {
+			return value != null ? converter.convert(type, value) : null;
+		}
+	}
+
+	private final ConvertUtilsBean convertUtils;
+
+	private final ClassValue<ConcurrentMap<Class<?>, Function<Object, Object>>> conversions = new ClassValue<ConcurrentMap<Class<?>, Function<Object, Object>>>() {
+		@Override
+		protected ConcurrentMap<Class<?>, Function<Object, Object>> computeValue(final Class<?> sourceClass) {
+			return new ConcurrentHashMap<Class<?>, Function<Object, Object>>();
+		}
+	};
+
+	ConverterCache(final ConvertUtilsBean convertUtils) {
+		this.convertUtils = convertUtils;
+	}
+
+	/**
+	 * Return the conversion of <code>sourceClass</code> values to
+	 * <code>type</code>, resolving it on first use.
+	 *
+	 * @param sourceClass Runtime class of the values
+	 * @param type        Target type
+	 * @return the conversion, {@link #IDENTITY} if none is needed
+	 */
+	Function<Object, Object> get(final Class<?> sourceClass, final Class<?> type) {
+		final ConcurrentMap<Class<?>, Function<Object, Object>> targets = conversions.get(sourceClass);
+		Function<Object, Object> conversion = targets.get(type);
+		if (conversion == null) {
+			final Converter converter = convertUtils.lookup(type);
+			conversion = isIdentity(converter, sourceClass, type) ? IDENTITY : conversion(converter, type);
+			final Function<Object, Object> existing = targets.putIfAbsent(type, conversion);
+			if (existing != null) {
+				conversion = existing;
+			}
+		}
+		return conversion;
+	}
+
+	/**
+	 * Return the conversion of values to <code>type</code> by
+	 * <code>converter</code>, <code>null</code> values being left unchanged.
+	 */
+	static Function<Object, Object> conversion(final Converter converter, final Class<?> type) {
+		return new Conversion(converter, type);
+	}
+
+	/**
+	 * Return <code>true</code> if <code>converter</code> returns every
+	 * <code>sourceClass</code> value unchanged when converting it to
+	 * <code>type</code>: there is no converter, or it is a standard converter and
+	 * the value already has the target type.
+	 *
+	 * @param converter   Converter registered for <code>type</code>, or
+	 *                    <code>null</code>
+	 * @param sourceClass Runtime class of the values
+	 * @param type        Target type
+	 * @return whether the conversion can be skipped
+	 */
+	static boolean isIdentity(final Converter converter, final Class<?> sourceClass, final Class<?> type) {
+		if (converter == null) {
+			return true;
+		}
+		// AbstractConverter.convert returns values of the target type as is,
+		// except arrays whose first element is converted.
+		return !type.isArray() && sourceClass == ConvertUtils.primitiveToWrapper(type) && isStandard(converter);
+	}
+
+	/**
+	 * Return <code>true</code> if <code>converter</code> is one of the standard
+	 * converters, whose behavior is known.
+	 *
+	 * @param converter Converter to test
+	 * @return whether the converter is a standard converter
+	 */
+	static boolean isStandard(final Converter converter) {
+		// ConvertUtilsBean registers its standard converters wrapped in a
+		// ConverterFacade.
+		return converter instanceof ConverterFacade || converter instanceof AbstractConverter
+				&& converter.getClass().getPackage() == AbstractConverter.class.getPackage();
+	}
+
+}
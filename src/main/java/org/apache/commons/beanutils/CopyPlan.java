@@ -0,0 +1,331 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * <p>
+ * Compiled, immutable plan for copying the properties of one origin class (a
+ * standard JavaBean or a record) to one destination JavaBean class.
+ * </p>
+ *
+ * <p>
+ * A plan holds one step per property name that is readable on the origin and
+ * writeable on the destination. Each step carries the bound accessor, the bound
+ * setter and the {@link Converter} registered for the destination property type,
+ * so executing a plan only performs the reads, conversions and writes.
+ * </p>
+ *
+ * <p>
+ * When a {@link RecordCopier.ToBean} was generated for the class pair, the plan holds
+ * that copier instead of steps.
+ * </p>
+ *
+ * <p>
+ * A plan counts its executions. When the count reaches the compile threshold of
+ * the owning BeanUtilsBean, the plan is compiled once into a hidden class by
+ * {@link BytecodeCopiers}, and later copies run that class. The hidden class
+ * reports failures with the same exceptions as the steps, so a failed copy is
+ * never run twice. Plans that cannot be compiled keep running step by step, as
+ * do plans whose hidden class fails to link when it runs.
+ * </p>
+ *
+ * @version $Id$
+ * @see BeanUtilsBeanImpl#copyProperties(Object, Object)
+ */
+final class CopyPlan {
+
+	private static final MethodType WRITER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	/**
+	 * A single property copy.
+	 */
+	static final class Step {
+		final String name;
+		/** Origin getter or record accessor */
+		final Method getter;
+		final Function<Object, Object> reader;
+		/** Destination setter */
+		final Method setter;
+		final MethodHandle writer;
+		/** Destination property type */
+		final Class<?> type;
+		/** Destination property type, primitives replaced by their wrappers */
+		final Class<?> wrapperType;
+		/**
+		 * Converter registered for the destination type, or <code>null</code> if
+		 * the values read never need a conversion
+		 */
+		final Converter converter;
+		/** Class of the values the converter returns unchanged, or <code>null</code> */
+		final Class<?> identityClass;
+		/**
+		 * Unboxed accessor when both ends are <code>int</code> and no conversion is
+		 * needed, otherwise <code>null</code>
+		 */
+		final ToIntFunction<Object> intReader;
+		/** Same as <code>intReader</code> for <code>long</code> properties */
+		final ToLongFunction<Object> longReader;
+		/** Same as <code>intReader</code> for <code>double</code> properties */
+		final ToDoubleFunction<Object> doubleReader;
+		/**
+		 * Setter typed (Object, primitive)void, set with the unboxed accessors,
+		 * otherwise <code>null</code>
+		 */
+		final MethodHandle primitiveWriter;
+
+		Step(final String name, final Method getter, final Function<Object, Object> reader, final Method setter,
+				final MethodHandle writer, final Class<?> type, final Converter converter) {
+			this.name = name;
+			this.getter = getter;
+			this.reader = reader;
+			this.setter = setter;
+			this.writer = writer.asType(WRITER_TYPE);
+			this.type = type;
+			this.wrapperType = ConvertUtils.primitiveToWrapper(type);
+			this.converter = converter;
+			this.identityClass = converter != null && ConverterCache.isIdentity(converter, wrapperType, type)
+					? wrapperType
+					: null;
+			final boolean unboxed = converter == null && getter.getReturnType() == type;
+			this.intReader = unboxed && type == int.class ? Accessors.intReader(getter) : null;
+			this.longReader = unboxed && type == long.class ? Accessors.longReader(getter) : null;
+			this.doubleReader = unboxed && type == double.class ? Accessors.doubleReader(getter) : null;
+			this.primitiveWriter = intReader != null || longReader != null || doubleReader != null
+					? writer.asType(MethodType.methodType(void.class, Object.class, type))
+					: null;
+		}
+	}
+
+	private final Class<?> destClass;
+
+	private final Class<?> origClass;
+
+	private final Step[] steps;
+
+	/** Generated copier of the class pair, or <code>null</code> */
+	private final RecordCopier.ToBean<Object, Object> copier;
+
+	/** Executions counted so far, up to the compile threshold */
+	private int executions;
+
+	/** Compiled copier, or <code>null</code> */
+	private volatile RecordCopier.ToBean<Object, Object> compiled;
+
+	private CopyPlan(final Class<?> destClass, final Class<?> origClass, final Step[] steps,
+			final RecordCopier.ToBean<Object, Object> copier) {
+		this.destClass = destClass;
+		this.origClass = origClass;
+		this.steps = steps;
+		this.copier = copier;
+	}
+
+	/**
+	 * Compile the plan copying <code>origClass</code> instances to
+	 * <code>destClass</code> instances.
+	 *
+	 * @param propertyUtils Introspection support of the owning BeanUtilsBean
+	 * @param convertUtils  Converters of the owning BeanUtilsBean
+	 * @param destClass     Destination JavaBean class
+	 * @param origClass     Origin JavaBean or record class
+	 * @return the compiled plan
+	 * @throws IllegalAccessException if an accessor or setter cannot be bound
+	 */
+	static CopyPlan compile(final PropertyUtilsBean propertyUtils, final ConvertUtilsBean convertUtils,
+			final Class<?> destClass, final Class<?> origClass) throws IllegalAccessException {
+		final RecordCopier.ToBean<Object, Object> copier = GeneratedCopiers.findToBean(origClass, destClass);
+		if (copier != null) {
+			return new CopyPlan(destClass, origClass, new Step[0], copier);
+		}
+		final Map<String, PropertyDescriptor> destDescriptors = new HashMap<String, PropertyDescriptor>();
+		for (final PropertyDescriptor descriptor : propertyUtils.getPropertyDescriptors(destClass)) {
+			destDescriptors.put(descriptor.getName(), descriptor);
+		}
+		final MethodHandles.Lookup lookup = MethodHandles.lookup();
+		final List<Step> steps = new ArrayList<Step>();
+		final RecordMetadata origMetadata = RecordMetadata.forClass(origClass);
+		if (origMetadata != null) {
+			for (final RecordMetadata.Component component : origMetadata.components()) {
+				addStep(steps, lookup, propertyUtils, convertUtils, destClass, destDescriptors, component.name,
+						component.accessor, component.reader);
+			}
+		} else {
+			for (final PropertyDescriptor descriptor : propertyUtils.getPropertyDescriptors(origClass)) {
+				final String name = descriptor.getName();
+				if ("class".equals(name)) {
+					continue; // No point in trying to set an object's class
+				}
+				final Method reader = MethodUtils.getAccessibleMethod(origClass, descriptor.getReadMethod());
+				if (reader != null) {
+					addStep(steps, lookup, propertyUtils, convertUtils, destClass, destDescriptors, name, reader,
+							Accessors.reader(reader));
+				}
+			}
+		}
+		return new CopyPlan(destClass, origClass, steps.toArray(new Step[steps.size()]), null);
+	}
+
+	private static void addStep(final List<Step> steps, final MethodHandles.Lookup lookup,
+			final PropertyUtilsBean propertyUtils, final ConvertUtilsBean convertUtils, final Class<?> destClass,
+			final Map<String, PropertyDescriptor> destDescriptors, final String name, final Method getter,
+			final Function<Object, Object> reader)
+			throws IllegalAccessException {
+		final PropertyDescriptor destDescriptor = destDescriptors.get(name);
+		if (destDescriptor == null || destDescriptor.getPropertyType() == null) {
+			return;
+		}
+		final Method writer = propertyUtils.getWriteMethod(destClass, destDescriptor);
+		if (writer == null) {
+			return;
+		}
+		final Class<?> type = destDescriptor.getPropertyType();
+		Converter converter = convertUtils.lookup(type);
+		final Class<?> sourceClass = ConvertUtils.primitiveToWrapper(getter.getReturnType());
+		if (Modifier.isFinal(sourceClass.getModifiers()) && ConverterCache.isIdentity(converter, sourceClass, type)) {
+			converter = null; // Every value read already has the destination type
+		}
+		steps.add(new Step(name, getter, reader, writer, lookup.unreflect(writer), type, converter));
+	}
+
+	/**
+	 * Return the generated copier replacing the steps of this plan, or
+	 * <code>null</code>.
+	 */
+	RecordCopier.ToBean<Object, Object> copier() {
+		return copier;
+	}
+
+	/**
+	 * Copy every planned property from <code>orig</code> to <code>dest</code>,
+	 * compiling the plan once it has been executed <code>threshold</code> times.
+	 *
+	 * @param dest      Destination bean, an instance of the planned destination
+	 *                  class
+	 * @param orig      Origin bean, an instance of the planned origin class
+	 * @param threshold Number of executions before compilation, negative to never
+	 *                  compile
+	 * @throws IllegalArgumentException  if a converted value does not match the
+	 *                                   destination property type
+	 * @throws InvocationTargetException if an accessor or setter throws an
+	 *                                   exception
+	 */
+	void execute(final Object dest, final Object orig, final int threshold) throws InvocationTargetException {
+		final RecordCopier.ToBean<Object, Object> compiled = this.compiled;
+		if (compiled != null) {
+			try {
+				compiled.copyProperties(dest, orig, null);
+			} catch (final LinkageError e) {
+				// The hidden class cannot reach a class or member of the plan: later copies
+				// run step by step, this one is not replayed
+				this.compiled = null;
+				throw e;
+			}
+			return;
+		}
+		if (threshold >= 0 && executions <= threshold && executions++ == threshold) {
+			// Racy count: at worst a plan is compiled twice
+			this.compiled = BytecodeCopiers.spin(destClass, origClass, steps);
+		}
+		execute(dest, orig);
+	}
+
+	/**
+	 * Copy every planned property from <code>orig</code> to <code>dest</code>.
+	 *
+	 * @param dest Destination bean, an instance of the planned destination class
+	 * @param orig Origin bean, an instance of the planned origin class
+	 * @throws IllegalArgumentException  if a converted value does not match the
+	 *                                   destination property type
+	 * @throws InvocationTargetException if an accessor or setter throws an
+	 *                                   exception
+	 */
+	void execute(final Object dest, final Object orig) throws InvocationTargetException {
+		for (final Step step : steps) {
+			if (step.primitiveWriter != null) {
+				executeUnboxed(step, dest, orig);
+				continue;
+			}
+			Object value;
+			try {
+				value = step.reader.apply(orig);
+			} catch (final Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+			if (value != null && step.converter != null && value.getClass() != step.identityClass) {
+				value = step.converter.convert(step.type, value);
+			}
+			if (value == null ? step.type.isPrimitive() : !step.wrapperType.isInstance(value)) {
+				throw mismatch(destClass, step, value);
+			}
+			try {
+				step.writer.invokeExact(dest, value);
+			} catch (final Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+	}
+
+	/**
+	 * Return the exception reporting a value that does not match the type of the
+	 * destination property of a step.
+	 *
+	 * @param destClass Destination class of the plan
+	 * @param step      Step copying the value
+	 * @param value     Value read and converted, possibly <code>null</code>
+	 * @return the exception to throw
+	 */
+	static IllegalArgumentException mismatch(final Class<?> destClass, final Step step, final Object value) {
+		return new IllegalArgumentException("Cannot set property '" + step.name + "' of class '"
+				+ destClass.getName() + "' to a value of type '"
+				+ (value == null ? "null" : value.getClass().getName()) + "' - argument type mismatch");
+	}
+
+	/**
+	 * Copy a primitive property without boxing its value.
+	 */
+	private static void executeUnboxed(final Step step, final Object dest, final Object orig)
+			throws InvocationTargetException {
+		try {
+			if (step.intReader != null) {
+				step.primitiveWriter.invokeExact(dest, step.intReader.applyAsInt(orig));
+			} else if (step.longReader != null) {
+				step.primitiveWriter.invokeExact(dest, step.longReader.applyAsLong(orig));
+			} else {
+				step.primitiveWriter.invokeExact(dest, step.doubleReader.applyAsDouble(orig));
+			}
+		} catch (final Throwable e) {
+			throw new InvocationTargetException(e);
+		}
+	}
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Compiled, immutable plan for deep copies to one record class: how every
+ * component is filled from the value of the origin property with the same
+ * name.
+ * </p>
+ *
+ * <p>
+ * A component whose class is a record, an array of records, a
+ * <code>List</code> of records or a <code>Map</code> with record values is
+ * copied recursively, element by element; any other component receives the
+ * origin value, converted if it is not an instance of the component class. The
+ * kind of every component and its record class are resolved once from the
+ * generic component types.
+ * </p>
+ *
+ * <p>
+ * Like {@link RecordMetadata}, plans only depend on their record class and are
+ * registered through a {@link ClassValue}.
+ * </p>
+ *
+ * <p>
+ * The plan also tells whether the record classes reachable from this one
+ * through the record classes of the components form a cycle. Only then can an
+ * origin graph hold a cycle that the copy would follow forever, so only then
+ * does a deep copy need to track the origins it visits.
+ * </p>
+ *
+ * @version $Id$
+ * @see BeanUtilsBeanImpl#deepCopy(Class, Object)
+ */
+final class DeepCopyPlan {
+
+	/** Component receiving the origin value, converted if needed */
+	static final int VALUE = 0;
+
+	/** Record component */
+	static final int RECORD = 1;
+
+	/** Array of records */
+	static final int ARRAY = 2;
+
+	/** <code>List</code> of records, filled with an <code>ArrayList</code> */
+	static final int LIST = 3;
+
+	/** <code>Map</code> of records, filled with a <code>LinkedHashMap</code> */
+	static final int MAP = 4;
+
+	private static final ClassValue<DeepCopyPlan> REGISTRY = new ClassValue<DeepCopyPlan>() {
+		@Override
+		protected DeepCopyPlan computeValue(final Class<?> type) {
+			final RecordMetadata metadata = RecordMetadata.forClass(type);
+			return metadata != null ? new DeepCopyPlan(metadata) : null;
+		}
+	};
+
+	private final RecordMetadata metadata;
+
+	/** Kind of every component */
+	private final int[] kinds;
+
+	/** Record class of every component, its elements or its values, otherwise <code>null</code> */
+	private final Class<?>[] recordClasses;
+
+	/** Whether the record classes reachable from this one form a cycle */
+	private final boolean cyclic;
+
+	private DeepCopyPlan(final RecordMetadata metadata) {
+		this.metadata = metadata;
+		final RecordMetadata.Component[] components = metadata.components();
+		this.kinds = new int[components.length];
+		this.recordClasses = new Class<?>[components.length];
+		for (int i = 0; i < components.length; i++) {
+			recordClasses[i] = recordClass(components[i]);
+			kinds[i] = recordClasses[i] == null ? VALUE : kindOf(components[i].type);
+		}
+		this.cyclic = hasCycle(metadata.recordClass(), new HashSet<Class<?>>(), new HashSet<Class<?>>());
+	}
+
+	/**
+	 * Return the kind of a component copied recursively.
+	 */
+	private static int kindOf(final Class<?> type) {
+		if (type.isArray()) {
+			return ARRAY;
+		} else if (RecordMetadata.isRecord(type)) {
+			return RECORD;
+		}
+		return Map.class.isAssignableFrom(type) ? MAP : LIST;
+	}
+
+	/**
+	 * Return the record class of a component copied recursively, or of its
+	 * elements or values, otherwise <code>null</code>.
+	 */
+	private static Class<?> recordClass(final RecordMetadata.Component component) {
+		final Class<?> type = component.type;
+		if (RecordMetadata.isRecord(type)) {
+			return type;
+		} else if (type.isArray()) {
+			return RecordMetadata.isRecord(type.getComponentType()) ? type.getComponentType() : null;
+		} else if (Map.class.isAssignableFrom(type)) {
+			return type.isAssignableFrom(LinkedHashMap.class) ? recordArgument(component.genericType, 1) : null;
+		}
+		return type.isAssignableFrom(ArrayList.class) ? recordArgument(component.genericType, 0) : null;
+	}
+
+	/**
+	 * Return the type argument at <code>index</code> if it is a record class,
+	 * otherwise <code>null</code>.
+	 */
+	private static Class<?> recordArgument(final Type type, final int index) {
+		if (!(type instanceof ParameterizedType)) {
+			return null;
+		}
+		final Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+		return index < arguments.length && arguments[index] instanceof Class
+				&& RecordMetadata.isRecord((Class<?>) arguments[index]) ? (Class<?>) arguments[index] : null;
+	}
+
+	/**
+	 * Return <code>true</code> if a cycle of record classes is reachable from
+	 * <code>recordClass</code> through the record classes of the components.
+	 *
+	 * @param path    Record classes of the current path
+	 * @param visited Record classes already walked
+	 */
+	private static boolean hasCycle(final Class<?> recordClass, final Set<Class<?>> path,
+			final Set<Class<?>> visited) {
+		if (path.contains(recordClass)) {
+			return true;
+		} else if (!visited.add(recordClass)) {
+			return false;
+		}
+		path.add(recordClass);
+		for (final RecordMetadata.Component component : RecordMetadata.forClass(recordClass).components()) {
+			final Class<?> componentRecordClass = recordClass(component);
+			if (componentRecordClass != null && hasCycle(componentRecordClass, path, visited)) {
+				return true;
+			}
+		}
+		path.remove(recordClass);
+		return false;
+	}
+
+	/**
+	 * Return the plan of the specified class.
+	 *
+	 * @param type Class to copy to
+	 * @return the plan of <code>type</code>, or <code>null</code> if it is not a
+	 *         record class
+	 */
+	static DeepCopyPlan forClass(final Class<?> type) {
+		return REGISTRY.get(type);
+	}
+
+	RecordMetadata metadata() {
+		return metadata;
+	}
+
+	/**
+	 * Return the kind of the component at <code>index</code>: {@link #VALUE},
+	 * {@link #RECORD}, {@link #ARRAY}, {@link #LIST} or {@link #MAP}.
+	 */
+	int kind(final int index) {
+		return kinds[index];
+	}
+
+	/**
+	 * Return the record class of the component at <code>index</code>, of its
+	 * elements or of its values, or <code>null</code> for a {@link #VALUE}
+	 * component.
+	 */
+	Class<?> recordClass(final int index) {
+		return recordClasses[index];
+	}
+
+	/**
+	 * Return <code>true</code> if the record classes reachable from this one form
+	 * a cycle, so that origin graphs copied with this plan may be cyclic.
+	 */
+	boolean isCyclic() {
+		return cyclic;
+	}
+
+}
@@ -0,0 +1,399 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Iterator creating one record per line of a memory-mapped, delimited UTF-8
+ * file whose first line names the columns.
+ * </p>
+ *
+ * <p>
+ * The file is mapped window by window with <code>FileChannel.map</code>, and
+ * each line is tokenized in place: fields are only located, then the fields of
+ * the columns bound to a component are converted straight from their bytes.
+ * Header columns are matched to component names once. Plain decimal fields of
+ * <code>int</code> and <code>long</code> components converted by the standard
+ * converters are parsed without creating a String; other fields are decoded and
+ * bound with the same rules as {@link BeanUtilsBeanImpl#populate(Class, Map)}.
+ * Components without a column, or whose field is missing from a short line,
+ * receive the value of a missing parameter.
+ * </p>
+ *
+ * <p>
+ * Fields may be quoted with <code>"</code>, a doubled quote standing for a
+ * quote; quoted fields may contain delimiters and line breaks. Lines may end
+ * with <code>\n</code> or <code>\r\n</code>, and blank lines are skipped.
+ * </p>
+ *
+ * <p>
+ * Memory use is bounded by the mapped window, which only grows for a line
+ * longer than it. The file is closed when the iterator is exhausted or closed.
+ * </p>
+ *
+ * @param <T> Record type
+ * @version $Id$
+ * @see BeanUtilsBeanImpl#delimitedIterator(Class, File, char)
+ */
+public final class DelimitedRecordIterator<T> implements Iterator<T>, Closeable {
+
+	/** Default size of the mapped window */
+	static final int DEFAULT_WINDOW = 64 * 1024 * 1024;
+
+	private static final byte QUOTE = '"';
+
+	private static final byte CR = '\r';
+
+	private static final byte LF = '\n';
+
+	/** Result of scanning a line that does not end in the mapped window */
+	private static final int INCOMPLETE = -2;
+
+	/** Result of scanning past the end of the file */
+	private static final int END = -1;
+
+	private final Class<T> recordClass;
+
+	private final PopulateProgram program;
+
+	private final FileChannel channel;
+
+	private final long size;
+
+	private final byte delimiter;
+
+	/** Size of the next mapped window */
+	private int window;
+
+	private MappedByteBuffer buffer;
+
+	/** File position of the mapped window */
+	private long bufferStart;
+
+	/** Position of the next line in the mapped window */
+	private int position;
+
+	/** Start of every field of the current line in the mapped window */
+	private int[] starts = new int[16];
+
+	/** End of every field of the current line in the mapped window */
+	private int[] ends = new int[16];
+
+	/** Whether every field of the current line is quoted */
+	private boolean[] quoted = new boolean[16];
+
+	/** Number of fields of the current line */
+	private int fields;
+
+	/** Whether the file has a header line */
+	private boolean header;
+
+	/** Column index of every component, -1 if none */
+	private final int[] bound;
+
+	/** Whether every component is parsed as a plain decimal <code>int</code> or <code>long</code> */
+	private final boolean[] decimal;
+
+	/** Constructor arguments */
+	private final Object[] args;
+
+	/** Decoding buffer of a single field */
+	private byte[] bytes = new byte[64];
+
+	/** Whether the current line has been read and not returned yet */
+	private boolean hasNext;
+
+	private boolean closed;
+
+	DelimitedRecordIterator(final Class<T> recordClass, final PopulateProgram program, final File file,
+			final char delimiter, final int window) throws IOException {
+		if (delimiter >= 0x80 || delimiter == QUOTE || delimiter == CR || delimiter == LF) {
+			throw new IllegalArgumentException("Invalid delimiter '" + delimiter + "'");
+		}
+		this.recordClass = recordClass;
+		this.program = program;
+		this.delimiter = (byte) delimiter;
+		this.window = window;
+		final RecordMetadata.Component[] components = program.metadata().components();
+		this.bound = new int[components.length];
+		this.decimal = new boolean[components.length];
+		this.args = program.metadata().newArguments();
+		final Map<String, Integer> indexes = new HashMap<String, Integer>();
+		for (int i = 0; i < components.length; i++) {
+			final PopulateProgram.Step step = program.step(i);
+			indexes.put(step.name, i);
+			decimal[i] = (step.type == int.class || step.type == long.class)
+					&& ConverterCache.isStandard(step.stringConverter);
+		}
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			this.size = channel.size();
+			map(0);
+			Arrays.fill(bound, -1);
+			header = readLine();
+			for (int column = 0; header && column < fields; column++) {
+				final Integer index = indexes.get(decode(column));
+				if (index != null && bound[index] < 0) {
+					bound[index] = column;
+				}
+			}
+		} catch (final IOException e) {
+			channel.close();
+			throw e;
+		} catch (final RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (!hasNext && !closed) {
+			try {
+				hasNext = header && readLine();
+				if (!hasNext) {
+					close();
+				}
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return hasNext;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		hasNext = false;
+		for (int i = 0; i < bound.length; i++) {
+			final int column = bound[i];
+			if (column < 0 || column >= fields) {
+				args[i] = program.bindMissing(i);
+				continue;
+			}
+			final Object value = decimal[i] && !quoted[column] ? parse(i, column) : null;
+			args[i] = value != null ? value : program.step(i).bind(decode(column));
+		}
+		// The constructor handle spreads the buffer, the record keeps no reference to it
+		return recordClass.cast(program.metadata().newInstance(args));
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("remove()");
+	}
+
+	/**
+	 * Close the file. The iterator has no next record afterwards.
+	 *
+	 * @throws IOException if the file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		hasNext = false;
+		buffer = null;
+		channel.close();
+	}
+
+	/**
+	 * Map the window starting at the specified file position.
+	 */
+	private void map(final long start) throws IOException {
+		bufferStart = start;
+		position = 0;
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(window, size - start));
+	}
+
+	/**
+	 * Locate the fields of the next non blank line, remapping the window when the
+	 * line does not end in it.
+	 *
+	 * @return <code>false</code> at the end of the file
+	 */
+	private boolean readLine() throws IOException {
+		while (true) {
+			final int next = scan(position);
+			if (next == INCOMPLETE) {
+				if (position == 0) {
+					if (window == Integer.MAX_VALUE) {
+						throw new IOException("Line at " + bufferStart + " longer than " + window + " bytes");
+					}
+					window = (int) Math.min(Integer.MAX_VALUE, window * 2L);
+				}
+				map(bufferStart + position);
+			} else if (next == END) {
+				position = buffer.limit();
+				return false;
+			} else {
+				position = next;
+				if (fields > 1 || ends[0] > starts[0] || quoted[0]) {
+					return true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Locate the fields of the line starting at <code>start</code>.
+	 *
+	 * @return the start of the next line, {@link #END} or {@link #INCOMPLETE}
+	 */
+	private int scan(final int start) {
+		final MappedByteBuffer buffer = this.buffer;
+		final int limit = buffer.limit();
+		final boolean last = bufferStart + limit == size;
+		if (start == limit) {
+			return last ? END : INCOMPLETE;
+		}
+		fields = 0;
+		int i = start;
+		while (true) {
+			final int field = fields++;
+			if (field == starts.length) {
+				starts = Arrays.copyOf(starts, field * 2);
+				ends = Arrays.copyOf(ends, field * 2);
+				quoted = Arrays.copyOf(quoted, field * 2);
+			}
+			quoted[field] = i < limit && buffer.get(i) == QUOTE;
+			if (quoted[field]) {
+				starts[field] = ++i;
+				while (true) {
+					if (i == limit) {
+						if (!last) {
+							return INCOMPLETE;
+						}
+						ends[field] = i; // Left open at the end of the file
+						return i;
+					} else if (buffer.get(i) == QUOTE) {
+						if (i + 1 == limit && !last) {
+							return INCOMPLETE;
+						} else if (i + 1 < limit && buffer.get(i + 1) == QUOTE) {
+							i += 2;
+						} else {
+							break;
+						}
+					} else {
+						i++;
+					}
+				}
+				ends[field] = i++;
+			} else {
+				starts[field] = i;
+			}
+			// Up to the delimiter or the line end, ignoring text after a closing quote
+			while (true) {
+				if (i == limit) {
+					if (!last) {
+						return INCOMPLETE;
+					}
+					if (!quoted[field]) {
+						ends[field] = i;
+					}
+					return i;
+				}
+				final byte b = buffer.get(i);
+				if (b == delimiter) {
+					if (!quoted[field]) {
+						ends[field] = i;
+					}
+					i++;
+					break;
+				} else if (b == LF) {
+					if (!quoted[field]) {
+						ends[field] = i > starts[field] && buffer.get(i - 1) == CR ? i - 1 : i;
+					}
+					return i + 1;
+				}
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * Parse a plain decimal field of an <code>int</code> or <code>long</code>
+	 * component in place.
+	 *
+	 * @return the argument, or <code>null</code> if the field is not a plain
+	 *         decimal number of the component type
+	 */
+	private Object parse(final int component, final int column) {
+		int i = starts[column];
+		final int end = ends[column];
+		final boolean negative = i < end && buffer.get(i) == '-';
+		if (negative) {
+			i++;
+		}
+		// 18 digits never overflow a long
+		if (i == end || end - i > 18) {
+			return null;
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			final int digit = buffer.get(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return null;
+			}
+			value = value * 10 + digit;
+		}
+		if (negative) {
+			value = -value;
+		}
+		if (program.step(component).type == long.class) {
+			return value;
+		}
+		return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? (Object) (int) value : null;
+	}
+
+	/**
+	 * Decode a field, unescaping doubled quotes of a quoted field.
+	 */
+	private String decode(final int column) {
+		final int start = starts[column];
+		final int end = ends[column];
+		if (bytes.length < end - start) {
+			bytes = new byte[Math.max(end - start, bytes.length * 2)];
+		}
+		int length = 0;
+		for (int i = start; i < end; i++) {
+			final byte b = buffer.get(i);
+			bytes[length++] = b;
+			if (b == QUOTE && quoted[column]) {
+				i++; // Doubled quote
+			}
+		}
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+
+/**
+ * <p>
+ * Registry of the {@link RecordCopier}s generated from {@link RecordMapping}
+ * annotations.
+ * </p>
+ *
+ * <p>
+ * Copiers are discovered with a {@link ServiceLoader} once per class loader and
+ * indexed by origin class. The index of the class loader of an origin class is
+ * registered for that class through a {@link ClassValue}, so that it is
+ * discarded together with the classes of its loader. Providers that cannot be
+ * loaded are skipped; the discovery stops if the same error is reported twice
+ * in a row, as the lazy iterator of a <code>ServiceLoader</code> does not
+ * always recover from an error.
+ * </p>
+ *
+ * @version $Id$
+ */
+final class GeneratedCopiers {
+
+	/** Copiers found from one class loader, keyed by origin then destination class */
+	private static final class Index {
+		final Map<Class<?>, Map<Class<?>, RecordCopier<Object, Object>>> copiers;
+
+		Index(final Map<Class<?>, Map<Class<?>, RecordCopier<Object, Object>>> copiers) {
+			this.copiers = copiers;
+		}
+
+		RecordCopier<Object, Object> get(final Class<?> origClass, final Class<?> destClass) {
+			final Map<Class<?>, RecordCopier<Object, Object>> destinations = copiers.get(origClass);
+			return destinations != null ? destinations.get(destClass) : null;
+		}
+	}
+
+	private static final Index EMPTY = new Index(
+			Collections.<Class<?>, Map<Class<?>, RecordCopier<Object, Object>>>emptyMap());
+
+	/**
+	 * Index of every class loader searched so far, weakly referenced so that
+	 * only the classes of the loader keep it alive
+	 */
+	private static final Map<ClassLoader, WeakReference<Index>> INDEXES = new WeakHashMap<ClassLoader, WeakReference<Index>>();
+
+	/** Index of the class loader of each origin class */
+	private static final ClassValue<Index> REGISTRY = new ClassValue<Index>() {
+		@Override
+		protected Index computeValue(final Class<?> origClass) {
+			return index(origClass.getClassLoader());
+		}
+	};
+
+	private GeneratedCopiers() {
+	}
+
+	/**
+	 * Return the generated copier from <code>origClass</code> to the JavaBean
+	 * class <code>destClass</code>.
+	 *
+	 * @param origClass Origin class
+	 * @param destClass Destination JavaBean class
+	 * @return the copier, or <code>null</code> if none was generated
+	 */
+	@SuppressWarnings("unchecked")
+	static RecordCopier.ToBean<Object, Object> findToBean(final Class<?> origClass, final Class<?> destClass) {
+		final RecordCopier<Object, Object> copier = REGISTRY.get(origClass).get(origClass, destClass);
+		return copier instanceof RecordCopier.ToBean ? (RecordCopier.ToBean<Object, Object>) copier : null;
+	}
+
+	/**
+	 * Return the generated copier from <code>origClass</code> to the record class
+	 * <code>destClass</code>.
+	 *
+	 * @param origClass Origin class
+	 * @param destClass Destination record class
+	 * @return the copier, or <code>null</code> if none was generated
+	 */
+	@SuppressWarnings("unchecked")
+	static RecordCopier.ToRecord<Object, Object> findToRecord(final Class<?> origClass, final Class<?> destClass) {
+		final RecordCopier<Object, Object> copier = REGISTRY.get(origClass).get(origClass, destClass);
+		return copier instanceof RecordCopier.ToRecord ? (RecordCopier.ToRecord<Object, Object>) copier : null;
+	}
+
+	/**
+	 * Return the index of the copiers found from the specified class loader,
+	 * loading them on first use.
+	 */
+	private static Index index(final ClassLoader classLoader) {
+		if (classLoader == null) {
+			return EMPTY; // Bootstrap classes have no generated copiers
+		}
+		synchronized (INDEXES) {
+			final WeakReference<Index> reference = INDEXES.get(classLoader);
+			Index index = reference != null ? reference.get() : null;
+			if (index == null) {
+				index = load(classLoader);
+				INDEXES.put(classLoader, new WeakReference<Index>(index));
+			}
+			return index;
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static Index load(final ClassLoader classLoader) {
+		final Map<Class<?>, Map<Class<?>, RecordCopier<Object, Object>>> copiers = new HashMap<Class<?>, Map<Class<?>, RecordCopier<Object, Object>>>();
+		final Iterator<RecordCopier> iterator = ServiceLoader.load(RecordCopier.class, classLoader).iterator();
+		String failure = null;
+		while (true) {
+			final RecordCopier copier;
+			try {
+				if (!iterator.hasNext()) {
+					break;
+				}
+				copier = iterator.next();
+			} catch (final ServiceConfigurationError e) {
+				final String message = String.valueOf(e.getMessage());
+				if (message.equals(failure)) {
+					break; // The iterator does not move past this error
+				}
+				failure = message;
+				continue; // Provider not visible from this class loader
+			}
+			failure = null;
+			Map<Class<?>, RecordCopier<Object, Object>> destinations = copiers.get(copier.getOriginType());
+			if (destinations == null) {
+				destinations = new HashMap<Class<?>, RecordCopier<Object, Object>>();
+				copiers.put(copier.getOriginType(), destinations);
+			}
+			destinations.put(copier.getDestinationType(), copier);
+		}
+		return copiers.isEmpty() ? EMPTY : new Index(copiers);
+	}
+
+}
@@ -0,0 +1,529 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.deking.util.ReflectionUtils;
+
+/**
+ * <p>
+ * Compiled, immutable program populating one record class from a map of
+ * request parameters.
+ * </p>
+ *
+ * <p>
+ * The program holds one step per record component. Each step has the raw class,
+ * the <code>Optional</code> unwrapping, the array component type and the
+ * {@link Converter}s it needs already resolved, so binding a map is a single loop
+ * of lookups and conversions followed by the canonical constructor call.
+ * </p>
+ *
+ * <p>
+ * The arguments of missing parameters are converted once, when the program is
+ * compiled, into a template that is cloned for every record; only the
+ * parameters actually present are converted per call. A component whose missing
+ * value cannot be converted (a converter configured to throw on missing values)
+ * is converted on every call instead, so the exception still surfaces from
+ * {@link #populate(Map)}.
+ * </p>
+ *
+ * <p>
+ * Record components whose class is itself a record have a nested program, so a
+ * record graph can be populated from dotted parameter names. Nested programs are
+ * compiled the first time a parameter name reaches them and are shared by all
+ * the programs of the graph, one per record class, so recursive record classes,
+ * such as a record with a component of its own class, are populated to any
+ * depth named by the parameters.
+ * </p>
+ *
+ * @version $Id$
+ * @see BeanUtilsBeanImpl#populate(Class, Map)
+ */
+final class PopulateProgram {
+
+	/**
+	 * Binding of a single record component.
+	 */
+	static final class Step {
+		final String name;
+		/** Raw class of the component */
+		final Class<?> type;
+		/** Value used when the parameter is missing */
+		final Object defaultValue;
+		final boolean isArray;
+		final boolean isOptional;
+		/**
+		 * Conversion target of a single value: the array component type, the
+		 * <code>Optional</code> type argument or the component class
+		 */
+		final Class<?> target;
+		/** Converter of String values to <code>target</code> */
+		final Converter stringConverter;
+		/** Converter of other values to <code>target</code>, or <code>null</code> */
+		final Converter objectConverter;
+		/** Converter of other values to the array class, or <code>null</code> */
+		final Converter arrayConverter;
+
+		Step(final RecordMetadata.Component component, final ConvertUtilsBean convertUtils) {
+			this.name = component.name;
+			this.type = component.type;
+			this.defaultValue = ReflectionUtils.getDefaultValue(type);
+			this.isArray = type.isArray();
+			this.isOptional = type == Optional.class;
+			if (isArray) {
+				this.target = type.getComponentType();
+			} else if (isOptional) {
+				this.target = optionalArgument(component.genericType);
+			} else {
+				this.target = type;
+			}
+			this.stringConverter = stringConverter(convertUtils, target);
+			this.objectConverter = convertUtils.lookup(target);
+			this.arrayConverter = isArray ? convertUtils.lookup(type) : null;
+		}
+
+		/**
+		 * Convert the parameter value bound to this component.
+		 *
+		 * @param value Parameter value, <code>null</code> if missing
+		 * @return the constructor argument
+		 */
+		Object bind(Object value) {
+			if (value == null) {
+				value = defaultValue;
+			} else if (value.getClass().isArray()) {
+				value = ((Object[]) value)[0];
+			}
+			if (isArray) {
+				if (value == null) {
+					return null; // Not the converted default of an element
+				} else if (value instanceof String) {
+					Object newValue = stringConverter.convert(target, value);
+					if (!newValue.getClass().isArray()) {
+						newValue = convert(arrayConverter, type, value);
+					}
+					if (!newValue.getClass().isArray()) {
+						newValue = new String[] { (String) newValue };
+					}
+					return newValue;
+				} else if (value instanceof String[]) {
+					return stringConverter.convert(target, ((String[]) value)[0]);
+				}
+				return convert(objectConverter, target, value);
+			}
+			if (value instanceof String) {
+				final Object newValue = stringConverter.convert(target, value);
+				return isOptional ? Optional.of(newValue) : newValue;
+			} else if (value instanceof String[]) {
+				return stringConverter.convert(target, ((String[]) value)[0]);
+			} else if (isOptional) {
+				return value != null ? Optional.of(convert(objectConverter, target, value)) : null;
+			}
+			return convert(objectConverter, target, value);
+		}
+
+		/**
+		 * Same as <code>BeanUtilsBean.convert(Object, Class)</code> with the
+		 * converter already looked up.
+		 */
+		private static Object convert(final Converter converter, final Class<?> type, final Object value) {
+			return converter != null ? converter.convert(type, value) : value;
+		}
+	}
+
+	/**
+	 * Parameter values collected by {@link #populateGraph(Map)} for one record of
+	 * the graph.
+	 */
+	private static final class Node {
+		/** Parameter values, aligned with the components */
+		final Object[] given;
+		/** Values of the nested records named by a parameter, or <code>null</code> */
+		Node[] children;
+
+		Node(final int size) {
+			this.given = new Object[size];
+		}
+
+		/**
+		 * Return the values of the nested record of the component at
+		 * <code>index</code>, created on first use.
+		 */
+		Node child(final int index, final int size) {
+			if (children == null) {
+				children = new Node[given.length];
+			}
+			if (children[index] == null) {
+				children[index] = new Node(size);
+			}
+			return children[index];
+		}
+	}
+
+	private final RecordMetadata metadata;
+
+	private final Step[] steps;
+
+	/** Converters of the owning BeanUtilsBean, used by nested programs */
+	private final ConvertUtilsBean convertUtils;
+
+	/** Programs of the record graph, shared by all its programs */
+	private final ConcurrentMap<Class<?>, PopulateProgram> programs;
+
+	/** Whether each component is a record, populated from dotted parameter names */
+	private final boolean[] recordComponents;
+
+	/**
+	 * Program of every record component, resolved on first use, otherwise
+	 * <code>null</code>
+	 */
+	private final PopulateProgram[] nested;
+
+	/** Whether no component is populated from dotted parameter names */
+	private final boolean flat;
+
+	/** Constructor arguments of missing parameters */
+	private final Object[] template;
+
+	/** Whether the template holds the argument of a missing parameter */
+	private final boolean[] templated;
+
+	private PopulateProgram(final RecordMetadata metadata, final ConvertUtilsBean convertUtils,
+			final ConcurrentMap<Class<?>, PopulateProgram> programs) {
+		this.metadata = metadata;
+		this.convertUtils = convertUtils;
+		this.programs = programs;
+		final RecordMetadata.Component[] components = metadata.components();
+		this.steps = new Step[components.length];
+		this.recordComponents = new boolean[components.length];
+		this.nested = new PopulateProgram[components.length];
+		boolean flat = true;
+		for (int i = 0; i < components.length; i++) {
+			steps[i] = new Step(components[i], convertUtils);
+			recordComponents[i] = RecordMetadata.isRecord(components[i].type);
+			flat &= !recordComponents[i];
+		}
+		this.flat = flat;
+		this.template = metadata.newArguments();
+		this.templated = new boolean[steps.length];
+		for (int i = 0; i < steps.length; i++) {
+			try {
+				template[i] = steps[i].bind(null);
+				templated[i] = true;
+			} catch (final RuntimeException e) {
+				// Converted on every call
+			}
+		}
+	}
+
+	/**
+	 * Compile the program populating the specified record class.
+	 *
+	 * @param metadata     Record class to populate
+	 * @param convertUtils Converters of the owning BeanUtilsBean
+	 * @return the compiled program
+	 */
+	static PopulateProgram compile(final RecordMetadata metadata, final ConvertUtilsBean convertUtils) {
+		final ConcurrentMap<Class<?>, PopulateProgram> programs = new ConcurrentHashMap<Class<?>, PopulateProgram>();
+		final PopulateProgram program = new PopulateProgram(metadata, convertUtils, programs);
+		programs.put(metadata.recordClass(), program);
+		return program;
+	}
+
+	/**
+	 * Return the program of the record component at <code>index</code>,
+	 * compiled on first use, or <code>null</code> if the component is not a
+	 * record.
+	 */
+	private PopulateProgram nested(final int index) {
+		PopulateProgram program = nested[index];
+		if (program == null && recordComponents[index]) {
+			final Class<?> recordClass = steps[index].type;
+			program = programs.get(recordClass);
+			if (program == null) {
+				program = new PopulateProgram(RecordMetadata.forClass(recordClass), convertUtils, programs);
+				final PopulateProgram previous = programs.putIfAbsent(recordClass, program);
+				if (previous != null) {
+					program = previous;
+				}
+			}
+			nested[index] = program; // Programs are immutable, a race only repeats the lookup
+		}
+		return program;
+	}
+
+	/**
+	 * Same lookup as <code>ConvertUtilsBean.convert(String, Class)</code>.
+	 */
+	private static Converter stringConverter(final ConvertUtilsBean convertUtils, final Class<?> target) {
+		final Converter converter = convertUtils.lookup(String.class, target);
+		return converter != null ? converter : convertUtils.lookup(String.class);
+	}
+
+	private static Class<?> optionalArgument(final Type type) {
+		final Type argument = type instanceof ParameterizedType ? ((ParameterizedType) type).getActualTypeArguments()[0]
+				: Object.class;
+		if (argument instanceof Class) {
+			return (Class<?>) argument;
+		} else if (argument instanceof ParameterizedType) {
+			return (Class<?>) ((ParameterizedType) argument).getRawType();
+		}
+		return Object.class;
+	}
+
+	/**
+	 * Return the record class populated by this program.
+	 */
+	RecordMetadata metadata() {
+		return metadata;
+	}
+
+	/**
+	 * Return the step binding the component at <code>index</code>.
+	 */
+	Step step(final int index) {
+		return steps[index];
+	}
+
+	/**
+	 * Return the argument of the component at <code>index</code> when its
+	 * parameter is missing.
+	 */
+	Object bindMissing(final int index) {
+		return templated[index] ? template[index] : steps[index].bind(null);
+	}
+
+	/**
+	 * Create a record from the specified request parameters.
+	 *
+	 * @param properties Map keyed by component names, with String, String[] or
+	 *                   already converted values
+	 * @return the new record
+	 */
+	Object populate(final Map<String, ? extends Object> properties) {
+		if (!flat) {
+			return populateGraph(properties);
+		}
+		final Object[] args = template.clone();
+		for (int i = 0; i < steps.length; i++) {
+			final Object value = properties.get(steps[i].name);
+			if (value != null || !templated[i]) {
+				args[i] = steps[i].bind(value);
+			}
+		}
+		return metadata.newInstance(args);
+	}
+
+	/**
+	 * <p>
+	 * Create a record graph from request parameters whose dotted names, such as
+	 * <code>customer.address.zip</code>, address the components of nested
+	 * records.
+	 * </p>
+	 *
+	 * <p>
+	 * Every name is matched segment by segment against the component names of
+	 * the program of each level, without creating substrings, and its value is
+	 * stored with the record of its last segment. The map is scanned once,
+	 * whatever the depth of the graph; the records are then created bottom-up. A
+	 * nested record is only created if a parameter names one of its components,
+	 * in which case it replaces a parameter bound to the record component itself.
+	 * </p>
+	 */
+	private Object populateGraph(final Map<String, ? extends Object> properties) {
+		final Node root = new Node(steps.length);
+		for (final Map.Entry<String, ? extends Object> entry : properties.entrySet()) {
+			final Object value = entry.getValue();
+			if (value == null || !(entry.getKey() instanceof String)) {
+				continue;
+			}
+			final String name = entry.getKey();
+			PopulateProgram program = this;
+			Node node = root;
+			int start = 0;
+			while (program != null) {
+				final int dot = name.indexOf('.', start);
+				final int end = dot < 0 ? name.length() : dot;
+				final int index = program.indexOf(name, start, end);
+				if (index < 0) {
+					break;
+				} else if (dot < 0) {
+					node.given[index] = value;
+					break;
+				}
+				final PopulateProgram child = program.nested(index);
+				if (child != null) {
+					node = node.child(index, child.steps.length);
+				}
+				program = child;
+				start = dot + 1;
+			}
+		}
+		return create(root);
+	}
+
+	/**
+	 * Return the index of the component named by
+	 * <code>name.substring(start, end)</code>, or -1 if there is none.
+	 */
+	private int indexOf(final String name, final int start, final int end) {
+		final int length = end - start;
+		for (int i = 0; i < steps.length; i++) {
+			final String stepName = steps[i].name;
+			if (stepName.length() == length && name.regionMatches(start, stepName, 0, length)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Create the record of this program from the parameter values collected by
+	 * {@link #populateGraph(Map)}.
+	 */
+	private Object create(final Node node) {
+		final Object[] given = node.given;
+		final Object[] args = template.clone();
+		for (int i = 0; i < steps.length; i++) {
+			if (node.children != null && node.children[i] != null) {
+				args[i] = nested(i).create(node.children[i]);
+			} else if (given[i] != null || !templated[i]) {
+				args[i] = steps[i].bind(given[i]);
+			}
+		}
+		return metadata.newInstance(args);
+	}
+
+	/**
+	 * Reader of the constructor argument of one component from one column.
+	 */
+	private interface Column {
+		Object get(int row);
+	}
+
+	/**
+	 * Create one record per row of the specified columns.
+	 *
+	 * @param columns Map keyed by component names, with arrays of String,
+	 *                String[] or already converted values, or primitive arrays
+	 * @return the new records, in row order
+	 * @throws IllegalArgumentException if a column is not an array or if the
+	 *                                  columns do not have the same length
+	 */
+	List<Object> populateColumns(final Map<String, ? extends Object> columns) {
+		final Object[] args = template.clone();
+		final Column[] bound = new Column[steps.length];
+		int rows = -1;
+		for (int i = 0; i < steps.length; i++) {
+			final Object column = columns.get(steps[i].name);
+			if (column == null) {
+				if (!templated[i]) {
+					args[i] = steps[i].bind(null);
+				}
+				continue;
+			}
+			if (!column.getClass().isArray()) {
+				throw new IllegalArgumentException("Column '" + steps[i].name + "' is not an array");
+			}
+			final int length = Array.getLength(column);
+			if (rows >= 0 && length != rows) {
+				throw new IllegalArgumentException("Column '" + steps[i].name + "' has " + length
+						+ " rows instead of " + rows);
+			}
+			rows = length;
+			bound[i] = bind(i, column);
+		}
+		final List<Object> records = new ArrayList<Object>(Math.max(rows, 0));
+		for (int row = 0; row < rows; row++) {
+			for (int i = 0; i < bound.length; i++) {
+				if (bound[i] != null) {
+					args[i] = bound[i].get(row);
+				}
+			}
+			records.add(metadata.newInstance(args));
+		}
+		return records;
+	}
+
+	/**
+	 * Bind a column to the component at <code>index</code>. Primitive columns of
+	 * the component type are read directly, other values are bound as request
+	 * parameters.
+	 */
+	private Column bind(final int index, final Object column) {
+		final Step step = steps[index];
+		if (column instanceof int[]) {
+			final int[] values = (int[]) column;
+			if (step.type == int.class) {
+				return new Column() {
+					@Override
+					public Object get(final int row) {
+						return values[row];
+					}
+				};
+			}
+		} else if (column instanceof long[]) {
+			final long[] values = (long[]) column;
+			if (step.type == long.class) {
+				return new Column() {
+					@Override
+					public Object get(final int row) {
+						return values[row];
+					}
+				};
+			}
+		} else if (column instanceof double[]) {
+			final double[] values = (double[]) column;
+			if (step.type == double.class) {
+				return new Column() {
+					@Override
+					public Object get(final int row) {
+						return values[row];
+					}
+				};
+			}
+		} else if (column instanceof Object[]) {
+			final Object[] values = (Object[]) column;
+			final boolean missing = templated[index];
+			final Object missingValue = template[index];
+			return new Column() {
+				@Override
+				public Object get(final int row) {
+					final Object value = values[row];
+					return value == null && missing ? missingValue : step.bind(value);
+				}
+			};
+		}
+		return new Column() {
+			@Override
+			public Object get(final int row) {
+				return step.bind(Array.get(column, row));
+			}
+		};
+	}
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.beans.IndexedPropertyDescriptor;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.commons.beanutils.expression.Resolver;
+
+/**
+ * <p>
+ * A property expression, such as <code>address.city</code> or
+ * <code>items[3].sku</code>, compiled once by
+ * {@link PropertyUtilsBeanImpl#compilePath(String)} and evaluated against any
+ * number of beans with the semantics of
+ * {@link PropertyUtilsBean#getNestedProperty(Object, String)}.
+ * </p>
+ *
+ * <p>
+ * The expression is split into segments by the {@link Resolver} when the path
+ * is compiled, so it is never parsed again. Each segment then binds the reader
+ * of its property the first time it meets a runtime class: the accessor
+ * function of a record component, or of the getter of a JavaBean property.
+ * The last class met is kept in an inline cache in front of the per-class
+ * bindings, so a segment that always sees the same class reads its property
+ * after a single reference comparison. Indexes and keys are applied to the
+ * value read, which must be an array or <code>List</code>, or a
+ * <code>Map</code>. Maps, {@link DynaBean}s, indexed or mapped property
+ * descriptors and unknown properties are delegated to the
+ * {@link PropertyUtilsBean} segment by segment.
+ * </p>
+ *
+ * <p>
+ * Instances are immutable apart from their caches and are safe for use by
+ * multiple threads. The readers bound by a path are not affected by later
+ * changes to the introspectors of its {@link PropertyUtilsBean}: compile the
+ * path again after such changes.
+ * </p>
+ *
+ * @version $Id$
+ */
+public final class PropertyPath {
+
+	/**
+	 * Reader of the property of one segment on one runtime class.
+	 */
+	private static final class Link {
+		final Class<?> type;
+		/** Accessor function, <code>null</code> if the segment is delegated */
+		final Function<Object, Object> reader;
+
+		Link(final Class<?> type, final Function<Object, Object> reader) {
+			this.type = type;
+			this.reader = reader;
+		}
+	}
+
+	/**
+	 * A single segment of the path, with its bindings.
+	 */
+	private final class Segment {
+		/** Segment expression, such as <code>items[3]</code> */
+		final String expression;
+		/** Expression from this segment to the end of the path */
+		final String remaining;
+		final String name;
+		/** Index, or -1 if the segment is not indexed */
+		final int index;
+		/** Key, or <code>null</code> if the segment is not mapped */
+		final String key;
+		final ClassValue<Link> links = new ClassValue<Link>() {
+			@Override
+			protected Link computeValue(final Class<?> type) {
+				return new Link(type, reader(type));
+			}
+		};
+		/** Link of the last class met */
+		volatile Link cached;
+
+		Segment(final Resolver resolver, final String expression, final String remaining) {
+			this.expression = expression;
+			this.remaining = remaining;
+			this.name = resolver.getProperty(expression);
+			this.index = resolver.isIndexed(expression) ? resolver.getIndex(expression) : -1;
+			this.key = resolver.isMapped(expression) ? resolver.getKey(expression) : null;
+		}
+
+		/**
+		 * Bind the reader of the property of this segment on the specified class.
+		 *
+		 * @return the accessor function, or <code>null</code> to delegate
+		 */
+		private Function<Object, Object> reader(final Class<?> type) {
+			if (Map.class.isAssignableFrom(type) || DynaBean.class.isAssignableFrom(type)) {
+				return null; // Properties of the instance
+			}
+			final RecordMetadata metadata = RecordMetadata.forClass(type);
+			if (metadata != null) {
+				final RecordMetadata.Component component = metadata.component(name);
+				if (component != null) {
+					return component.reader;
+				}
+			}
+			for (final PropertyDescriptor descriptor : propertyUtils.getPropertyDescriptors(type)) {
+				if (!name.equals(descriptor.getName())) {
+					continue;
+				}
+				if (descriptor instanceof IndexedPropertyDescriptor || descriptor instanceof MappedPropertyDescriptor
+						|| descriptor.getReadMethod() == null) {
+					return null;
+				}
+				final Method method = MethodUtils.getAccessibleMethod(type, descriptor.getReadMethod());
+				try {
+					return method != null ? Accessors.reader(method) : null;
+				} catch (final IllegalAccessException e) {
+					return null; // Left to PropertyUtilsBean
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Return the value of this segment on the specified bean.
+		 */
+		Object get(final Object bean)
+				throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+			final Class<?> type = bean.getClass();
+			Link link = cached;
+			if (link == null || link.type != type) {
+				link = links.get(type);
+				cached = link;
+			}
+			if (link.reader == null) {
+				return propertyUtils.getProperty(bean, expression);
+			}
+			final Object value;
+			try {
+				value = link.reader.apply(bean);
+			} catch (final Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+			if (index >= 0) {
+				if (value != null && value.getClass().isArray()) {
+					return Array.get(value, index);
+				} else if (value instanceof List) {
+					return ((List<?>) value).get(index);
+				}
+				throw new IllegalArgumentException("Property '" + name + "' is not indexed on bean class '"
+						+ type + "'");
+			} else if (key != null) {
+				return value instanceof Map ? ((Map<?, ?>) value).get(key) : null;
+			}
+			return value;
+		}
+	}
+
+	private final PropertyUtilsBean propertyUtils;
+
+	private final String path;
+
+	private final Segment[] segments;
+
+	PropertyPath(final PropertyUtilsBean propertyUtils, final String path) {
+		this.propertyUtils = propertyUtils;
+		this.path = path;
+		final Resolver resolver = propertyUtils.getResolver();
+		int count = 0;
+		for (String name = path; name != null && name.length() > 0; name = resolver.remove(name)) {
+			count++;
+		}
+		if (count == 0) {
+			throw new IllegalArgumentException("No name specified");
+		}
+		this.segments = new Segment[count];
+		String name = path;
+		for (int i = 0; i < count; i++) {
+			segments[i] = new Segment(resolver, resolver.next(name), name);
+			name = resolver.remove(name);
+		}
+	}
+
+	/**
+	 * Return the value of this path on the specified bean.
+	 *
+	 * @param bean Bean whose property is to be extracted
+	 * @return the property value
+	 *
+	 * @throws IllegalAccessException    if the caller does not have access to the
+	 *                                   property accessor method
+	 * @throws IllegalArgumentException  if <code>bean</code> is null, or if an
+	 *                                   indexed property is neither an array nor
+	 *                                   a <code>List</code>
+	 * @throws NestedNullException       if a nested reference to a property
+	 *                                   returns null
+	 * @throws InvocationTargetException if the property accessor method throws an
+	 *                                   exception
+	 * @throws NoSuchMethodException     if an accessor method for this property
+	 *                                   cannot be found
+	 */
+	public Object get(final Object bean)
+			throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+		if (bean == null) {
+			throw new IllegalArgumentException("No bean specified");
+		}
+		Object value = bean;
+		for (int i = 0; i < segments.length; i++) {
+			final Object nested = segments[i].get(value);
+			if (nested == null && i < segments.length - 1) {
+				throw new NestedNullException("Null property value for '" + segments[i].remaining
+						+ "' on bean class '" + value.getClass() + "'");
+			}
+			value = nested;
+		}
+		return value;
+	}
+
+	/**
+	 * Return the property expression of this path.
+	 *
+	 * @return the property expression
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	@Override
+	public String toString() {
+		return path;
+	}
+
+}
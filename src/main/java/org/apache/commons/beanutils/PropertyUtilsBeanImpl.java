@@ -1,212 +1,437 @@
-/*
- * Licensed to the Apache Software Foundation (ASF) under one or more
- * contributor license agreements.  See the NOTICE file distributed with
- * this work for additional information regarding copyright ownership.
- * The ASF licenses this file to You under the Apache License, Version 2.0
- * (the "License"); you may not use this file except in compliance with
- * the License.  You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package org.apache.commons.beanutils;
-
-import java.beans.PropertyDescriptor;
-import java.lang.reflect.InvocationTargetException;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
-
-import org.apache.commons.beanutils.expression.Resolver;
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
-import org.deking.util.RecordReflectUtils;
-import org.deking.util.common.RecComponent;
-
-/**
- * Utility methods for using Java Reflection APIs to facilitate generic property
- * getter and setter operations on Java objects. Much of this code was
- * originally included in <code>BeanUtils</code>, but has been separated because
- * of the volume of code involved.
- * <p>
- * In general, the objects that are examined and modified using these methods
- * are expected to conform to the property getter and setter method naming
- * conventions described in the JavaBeans Specification (Version 1.0.1). No data
- * type conversions are performed, and there are no usage of any
- * <code>PropertyEditor</code> classes that have been registered, although a
- * convenient way to access the registered classes themselves is included.
- * <p>
- * For the purposes of this class, five formats for referencing a particular
- * property value of a bean are defined, with the <i>default</i> layout of an
- * identifying String in parentheses. However the notation for these formats and
- * how they are resolved is now (since BeanUtils 1.8.0) controlled by the
- * configured {@link Resolver} implementation:
- * <ul>
- * <li><strong>Simple (<code>name</code>)</strong> - The specified
- * <code>name</code> identifies an individual property of a particular JavaBean.
- * The name of the actual getter or setter method to be used is determined using
- * standard JavaBeans instrospection, so that (unless overridden by a
- * <code>BeanInfo</code> class, a property named "xyz" will have a getter method
- * named <code>getXyz()</code> or (for boolean properties only)
- * <code>isXyz()</code>, and a setter method named <code>setXyz()</code>.</li>
- * <li><strong>Nested (<code>name1.name2.name3</code>)</strong> The first name
- * element is used to select a property getter, as for simple references above.
- * The object returned for this property is then consulted, using the same
- * approach, for a property getter for a property named <code>name2</code>, and
- * so on. The property value that is ultimately retrieved or modified is the one
- * identified by the last name element.</li>
- * <li><strong>Indexed (<code>name[index]</code>)</strong> - The underlying
- * property value is assumed to be an array, or this JavaBean is assumed to have
- * indexed property getter and setter methods. The appropriate (zero-relative)
- * entry in the array is selected. <code>List</code> objects are now also
- * supported for read/write. You simply need to define a getter that returns the
- * <code>List</code></li>
- * <li><strong>Mapped (<code>name(key)</code>)</strong> - The JavaBean is
- * assumed to have an property getter and setter methods with an additional
- * attribute of type <code>java.lang.String</code>.</li>
- * <li><strong>Combined (<code>name1.name2[index].name3(key)</code>)</strong> -
- * Combining mapped, nested, and indexed references is also supported.</li>
- * </ul>
- *
- * @version $Id$
- * @see Resolver
- * @see PropertyUtils
- * @since 1.7
- */
-
-public final class PropertyUtilsBeanImpl extends PropertyUtilsBean {
-	/**
-	 * Logging for this instance
-	 */
-	private final Log log = LogFactory.getLog(BeanUtils.class);
-
-	/**
-	 * <p>
-	 * Copy property values from the "origin" bean to the "destination" bean for all
-	 * cases where the property names are the same (even though the actual getter
-	 * and setter methods might have been customized via <code>BeanInfo</code>
-	 * classes). No conversions are performed on the actual property values -- it is
-	 * assumed that the values retrieved from the origin bean are
-	 * assignment-compatible with the types expected by the destination bean.
-	 * </p>
-	 *
-	 * <p>
-	 * If the origin "bean" is actually a <code>Map</code>, it is assumed to contain
-	 * String-valued <strong>simple</strong> property names as the keys, pointing at
-	 * the corresponding property values that will be set in the destination
-	 * bean.<strong>Note</strong> that this method is intended to perform a "shallow
-	 * copy" of the properties and so complex properties (for example, nested ones)
-	 * will not be copied.
-	 * </p>
-	 *
-	 * <p>
-	 * Note, that this method will not copy a List to a List, or an Object[] to an
-	 * Object[]. It's specifically for copying JavaBean properties.
-	 * </p>
-	 *
-	 * @param dest Destination bean whose properties are modified
-	 * @param orig Origin bean whose properties are retrieved
-	 *
-	 * @throws IllegalAccessException    if the caller does not have access to the
-	 *                                   property accessor method
-	 * @throws IllegalArgumentException  if the <code>dest</code> or
-	 *                                   <code>orig</code> argument is null
-	 * @throws InvocationTargetException if the property accessor method throws an
-	 *                                   exception
-	 * @throws NoSuchMethodException     if an accessor method for this propety
-	 *                                   cannot be found
-	 */
-	public void copyProperties(final Object dest, final Object orig)
-			throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
-
-		if (dest == null) {
-			throw new IllegalArgumentException("No destination bean specified");
-		}
-		if (orig == null) {
-			throw new IllegalArgumentException("No origin bean specified");
-		}
-
-		if (orig instanceof DynaBean) {
-			final DynaProperty[] origDescriptors = ((DynaBean) orig).getDynaClass().getDynaProperties();
-			for (DynaProperty origDescriptor : origDescriptors) {
-				final String name = origDescriptor.getName();
-				if (isReadable(orig, name) && isWriteable(dest, name)) {
-					try {
-						final Object value = ((DynaBean) orig).get(name);
-						if (dest instanceof DynaBean) {
-							((DynaBean) dest).set(name, value);
-						} else {
-							setSimpleProperty(dest, name, value);
-						}
-					} catch (final NoSuchMethodException e) {
-						if (log.isDebugEnabled()) {
-							log.debug("Error writing to '" + name + "' on class '" + dest.getClass() + "'", e);
-						}
-					}
-				}
-			}
-		} else if (orig instanceof Map) {
-			final Iterator<?> entries = ((Map<?, ?>) orig).entrySet().iterator();
-			while (entries.hasNext()) {
-				final Map.Entry<?, ?> entry = (Entry<?, ?>) entries.next();
-				final String name = (String) entry.getKey();
-				if (isWriteable(dest, name)) {
-					try {
-						if (dest instanceof DynaBean) {
-							((DynaBean) dest).set(name, entry.getValue());
-						} else {
-							setSimpleProperty(dest, name, entry.getValue());
-						}
-					} catch (final NoSuchMethodException e) {
-						if (log.isDebugEnabled()) {
-							log.debug("Error writing to '" + name + "' on class '" + dest.getClass() + "'", e);
-						}
-					}
-				}
-			}
-		} else /* if (orig is a Record) */ {
-			boolean isRecord = RecordReflectUtils.isRecord(orig.getClass());
-			final Object[] origDescriptors = isRecord ? RecordReflectUtils.recordComponents(orig.getClass(), null)
-					: getPropertyDescriptors(orig);
-			for (Object origDescriptor : origDescriptors) {
-//				@SuppressWarnings("preview")
-//            	final String name = (switch (origDescriptor) {
-//				case PropertyDescriptor p -> p.getName();
-//				case RecordComponent r -> r.getName();
-//				default -> throw new IllegalArgumentException("Unexpected value: " + origDescriptor);
-//				});
-				String name = null;
-				if (origDescriptor instanceof PropertyDescriptor) {
-					name = ((PropertyDescriptor) origDescriptor).getName();
-				} else if (origDescriptor instanceof RecComponent) {
-					name = ((RecComponent) origDescriptor).name();
-				}
-				if ((isReadable(orig, name) || isRecord) && isWriteable(dest, name)) {
-					try {
-						final Object value = isRecord
-								? RecordReflectUtils.componentValue(orig,
-										new RecComponent(name, ((RecComponent) origDescriptor).type(), -1))
-								: getSimpleProperty(orig, name);
-						if (dest instanceof DynaBean) {
-							((DynaBean) dest).set(name, value);
-						} else {
-							setSimpleProperty(dest, name, value);
-						}
-					} catch (final NoSuchMethodException e) {
-						if (log.isDebugEnabled()) {
-							log.debug("Error writing to '" + name + "' on class '" + dest.getClass() + "'", e);
-						}
-					}
-				}
-			}
-		}
-
-	}
-
-}
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.beanutils.expression.Resolver;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Utility methods for using Java Reflection APIs to facilitate generic property
+ * getter and setter operations on Java objects. Much of this code was
+ * originally included in <code>BeanUtils</code>, but has been separated because
+ * of the volume of code involved.
+ * <p>
+ * In general, the objects that are examined and modified using these methods
+ * are expected to conform to the property getter and setter method naming
+ * conventions described in the JavaBeans Specification (Version 1.0.1). No data
+ * type conversions are performed, and there are no usage of any
+ * <code>PropertyEditor</code> classes that have been registered, although a
+ * convenient way to access the registered classes themselves is included.
+ * <p>
+ * For the purposes of this class, five formats for referencing a particular
+ * property value of a bean are defined, with the <i>default</i> layout of an
+ * identifying String in parentheses. However the notation for these formats and
+ * how they are resolved is now (since BeanUtils 1.8.0) controlled by the
+ * configured {@link Resolver} implementation:
+ * <ul>
+ * <li><strong>Simple (<code>name</code>)</strong> - The specified
+ * <code>name</code> identifies an individual property of a particular JavaBean.
+ * The name of the actual getter or setter method to be used is determined using
+ * standard JavaBeans instrospection, so that (unless overridden by a
+ * <code>BeanInfo</code> class, a property named "xyz" will have a getter method
+ * named <code>getXyz()</code> or (for boolean properties only)
+ * <code>isXyz()</code>, and a setter method named <code>setXyz()</code>.</li>
+ * <li><strong>Nested (<code>name1.name2.name3</code>)</strong> The first name
+ * element is used to select a property getter, as for simple references above.
+ * The object returned for this property is then consulted, using the same
+ * approach, for a property getter for a property named <code>name2</code>, and
+ * so on. The property value that is ultimately retrieved or modified is the one
+ * identified by the last name element.</li>
+ * <li><strong>Indexed (<code>name[index]</code>)</strong> - The underlying
+ * property value is assumed to be an array, or this JavaBean is assumed to have
+ * indexed property getter and setter methods. The appropriate (zero-relative)
+ * entry in the array is selected. <code>List</code> objects are now also
+ * supported for read/write. You simply need to define a getter that returns the
+ * <code>List</code></li>
+ * <li><strong>Mapped (<code>name(key)</code>)</strong> - The JavaBean is
+ * assumed to have an property getter and setter methods with an additional
+ * attribute of type <code>java.lang.String</code>.</li>
+ * <li><strong>Combined (<code>name1.name2[index].name3(key)</code>)</strong> -
+ * Combining mapped, nested, and indexed references is also supported.</li>
+ * </ul>
+ *
+ * @version $Id$
+ * @see Resolver
+ * @see PropertyUtils
+ * @since 1.7
+ */
+
+public final class PropertyUtilsBeanImpl extends PropertyUtilsBean {
+	/**
+	 * Logging for this instance
+	 */
+	private final Log log = LogFactory.getLog(BeanUtils.class);
+
+	/**
+	 * Maximum number of names remembered per bean class in each name cache
+	 */
+	private static final int MAX_CACHED_NAMES = 256;
+
+	/**
+	 * Simple property names known not to be readable, keyed by bean class
+	 */
+	private volatile ClassValue<Set<String>> unreadable = newNameCache();
+
+	/**
+	 * Simple property names known not to be writeable, keyed by bean class
+	 */
+	private volatile ClassValue<Set<String>> unwriteable = newNameCache();
+
+	/**
+	 * <p>
+	 * Create an instance registering the {@link RecordBeanIntrospector} after
+	 * the default introspector, so that the components of record classes are
+	 * readable properties.
+	 * </p>
+	 *
+	 * <p>
+	 * <code>resetBeanIntrospectors()</code> is final and removes it, like any
+	 * other added introspector.
+	 * </p>
+	 */
+	public PropertyUtilsBeanImpl() {
+		addBeanIntrospector(RecordBeanIntrospector.INSTANCE);
+	}
+
+	/**
+	 * <p>
+	 * Return <code>true</code> if the specified property name identifies a
+	 * readable property on the specified bean; otherwise, return
+	 * <code>false</code>.
+	 * </p>
+	 *
+	 * <p>
+	 * Simple property names found not to be readable on a standard JavaBean are
+	 * remembered per bean class, so asking again costs a single set lookup
+	 * instead of a resolution of the name and of the property descriptor. The
+	 * names often come from untrusted input, such as the keys of a map of
+	 * request parameters, so at most {@value #MAX_CACHED_NAMES} names are
+	 * remembered per class; other names are resolved on every call.
+	 * </p>
+	 *
+	 * @param bean Bean to be examined (may be a {@link DynaBean}
+	 * @param name Property name to be evaluated
+	 * @return <code>true</code> if the property is readable, otherwise
+	 *         <code>false</code>
+	 *
+	 * @throws IllegalArgumentException if <code>bean</code> or <code>name</code>
+	 *                                  is <code>null</code>
+	 */
+	@Override
+	public boolean isReadable(final Object bean, final String name) {
+		if (!isCacheable(bean, name)) {
+			return super.isReadable(bean, name);
+		}
+		final Set<String> names = unreadable.get(bean.getClass());
+		if (names.contains(name)) {
+			return false;
+		}
+		final boolean readable = super.isReadable(bean, name);
+		if (!readable && names.size() < MAX_CACHED_NAMES && isSimple(name)) {
+			names.add(name);
+		}
+		return readable;
+	}
+
+	/**
+	 * <p>
+	 * Return <code>true</code> if the specified property name identifies a
+	 * writeable property on the specified bean; otherwise, return
+	 * <code>false</code>.
+	 * </p>
+	 *
+	 * <p>
+	 * Simple property names found not to be writeable on a standard JavaBean
+	 * are remembered per bean class, so asking again costs a single set lookup
+	 * instead of a resolution of the name and of the property descriptor. The
+	 * names often come from untrusted input, such as the keys of a map of
+	 * request parameters, so at most {@value #MAX_CACHED_NAMES} names are
+	 * remembered per class; other names are resolved on every call.
+	 * </p>
+	 *
+	 * @param bean Bean to be examined (may be a {@link DynaBean}
+	 * @param name Property name to be evaluated
+	 * @return <code>true</code> if the property is writeable, otherwise
+	 *         <code>false</code>
+	 *
+	 * @throws IllegalArgumentException if <code>bean</code> or <code>name</code>
+	 *                                  is <code>null</code>
+	 */
+	@Override
+	public boolean isWriteable(final Object bean, final String name) {
+		if (!isCacheable(bean, name)) {
+			return super.isWriteable(bean, name);
+		}
+		final Set<String> names = unwriteable.get(bean.getClass());
+		if (names.contains(name)) {
+			return false;
+		}
+		final boolean writeable = super.isWriteable(bean, name);
+		if (!writeable && names.size() < MAX_CACHED_NAMES && isSimple(name)) {
+			names.add(name);
+		}
+		return writeable;
+	}
+
+	/**
+	 * Only standard JavaBeans have properties that depend on their class alone.
+	 */
+	private static boolean isCacheable(final Object bean, final String name) {
+		return bean != null && name != null && !(bean instanceof DynaBean) && !(bean instanceof Map);
+	}
+
+	/**
+	 * Return <code>true</code> if the specified name is neither nested, indexed
+	 * nor mapped for the current {@link Resolver}.
+	 */
+	private boolean isSimple(final String name) {
+		final Resolver resolver = getResolver();
+		return !resolver.hasNested(name) && !resolver.isIndexed(name) && !resolver.isMapped(name);
+	}
+
+	/**
+	 * Set the {@link Resolver} implementation used by this instance and forget
+	 * the names known not to be readable or writeable.
+	 *
+	 * @param resolver The property expression resolver.
+	 */
+	@Override
+	public void setResolver(final Resolver resolver) {
+		super.setResolver(resolver);
+		clearNameCaches();
+	}
+
+	/**
+	 * Add a <code>BeanIntrospector</code> and forget the names known not to be
+	 * readable or writeable.
+	 *
+	 * @param introspector the <code>BeanIntrospector</code> to be added (must not
+	 *                     be <b>null</b>
+	 * @throws IllegalArgumentException if the argument is <b>null</b>
+	 */
+	@Override
+	public void addBeanIntrospector(final BeanIntrospector introspector) {
+		super.addBeanIntrospector(introspector);
+		clearNameCaches();
+	}
+
+	/**
+	 * Remove a <code>BeanIntrospector</code> and forget the names known not to be
+	 * readable or writeable.
+	 *
+	 * @param introspector the <code>BeanIntrospector</code> to be removed
+	 * @return <b>true</b> if the <code>BeanIntrospector</code> existed and could
+	 *         be removed, <b>false</b> otherwise
+	 */
+	@Override
+	public boolean removeBeanIntrospector(final BeanIntrospector introspector) {
+		final boolean removed = super.removeBeanIntrospector(introspector);
+		clearNameCaches();
+		return removed;
+	}
+
+	/**
+	 * <p>
+	 * Clear any cached property descriptors information for all classes loaded by
+	 * any class loaders, and forget the names known not to be readable or
+	 * writeable.
+	 * </p>
+	 *
+	 * <p>
+	 * <code>resetBeanIntrospectors()</code> is final and keeps every cache, like
+	 * in <code>PropertyUtilsBean</code>: call this method after it.
+	 * </p>
+	 */
+	@Override
+	public void clearDescriptors() {
+		super.clearDescriptors();
+		clearNameCaches();
+	}
+
+	private void clearNameCaches() {
+		unreadable = newNameCache();
+		unwriteable = newNameCache();
+	}
+
+	private static ClassValue<Set<String>> newNameCache() {
+		return new ClassValue<Set<String>>() {
+			@Override
+			protected Set<String> computeValue(final Class<?> beanClass) {
+				return ConcurrentHashMap.<String>newKeySet();
+			}
+		};
+	}
+
+	/**
+	 * <p>
+	 * Compile the specified property expression into a reusable path, parsed
+	 * once with the current {@link Resolver}.
+	 * </p>
+	 *
+	 * <p>
+	 * The path is evaluated with the semantics of
+	 * {@link #getNestedProperty(Object, String)}, but binds the accessor of each
+	 * segment once per runtime class instead of resolving the expression on every
+	 * call; see {@link PropertyPath}. It can be shared by multiple threads.
+	 * </p>
+	 *
+	 * @param path Possibly nested, indexed and mapped property expression
+	 * @return the compiled path
+	 *
+	 * @throws IllegalArgumentException if <code>path</code> is null or empty, or
+	 *                                  has an invalid index
+	 */
+	public PropertyPath compilePath(final String path) {
+		if (path == null) {
+			throw new IllegalArgumentException("No name specified");
+		}
+		return new PropertyPath(this, path);
+	}
+
+	/**
+	 * <p>
+	 * Copy property values from the "origin" bean to the "destination" bean for all
+	 * cases where the property names are the same (even though the actual getter
+	 * and setter methods might have been customized via <code>BeanInfo</code>
+	 * classes). No conversions are performed on the actual property values -- it is
+	 * assumed that the values retrieved from the origin bean are
+	 * assignment-compatible with the types expected by the destination bean.
+	 * </p>
+	 *
+	 * <p>
+	 * If the origin "bean" is actually a <code>Map</code>, it is assumed to contain
+	 * String-valued <strong>simple</strong> property names as the keys, pointing at
+	 * the corresponding property values that will be set in the destination
+	 * bean.<strong>Note</strong> that this method is intended to perform a "shallow
+	 * copy" of the properties and so complex properties (for example, nested ones)
+	 * will not be copied.
+	 * </p>
+	 *
+	 * <p>
+	 * Note, that this method will not copy a List to a List, or an Object[] to an
+	 * Object[]. It's specifically for copying JavaBean properties.
+	 * </p>
+	 *
+	 * @param dest Destination bean whose properties are modified
+	 * @param orig Origin bean whose properties are retrieved
+	 *
+	 * @throws IllegalAccessException    if the caller does not have access to the
+	 *                                   property accessor method
+	 * @throws IllegalArgumentException  if the <code>dest</code> or
+	 *                                   <code>orig</code> argument is null
+	 * @throws InvocationTargetException if the property accessor method throws an
+	 *                                   exception
+	 * @throws NoSuchMethodException     if an accessor method for this propety
+	 *                                   cannot be found
+	 */
+	public void copyProperties(final Object dest, final Object orig)
+			throws IllegalAccessException, InvocationTargetException, NoSuchMethodException {
+
+		if (dest == null) {
+			throw new IllegalArgumentException("No destination bean specified");
+		}
+		if (orig == null) {
+			throw new IllegalArgumentException("No origin bean specified");
+		}
+
+		if (orig instanceof DynaBean) {
+			final DynaProperty[] origDescriptors = ((DynaBean) orig).getDynaClass().getDynaProperties();
+			for (DynaProperty origDescriptor : origDescriptors) {
+				final String name = origDescriptor.getName();
+				if (isReadable(orig, name) && isWriteable(dest, name)) {
+					try {
+						final Object value = ((DynaBean) orig).get(name);
+						if (dest instanceof DynaBean) {
+							((DynaBean) dest).set(name, value);
+						} else {
+							setSimpleProperty(dest, name, value);
+						}
+					} catch (final NoSuchMethodException e) {
+						if (log.isDebugEnabled()) {
+							log.debug("Error writing to '" + name + "' on class '" + dest.getClass() + "'", e);
+						}
+					}
+				}
+			}
+		} else if (orig instanceof Map) {
+			final Iterator<?> entries = ((Map<?, ?>) orig).entrySet().iterator();
+			while (entries.hasNext()) {
+				final Map.Entry<?, ?> entry = (Entry<?, ?>) entries.next();
+				final String name = (String) entry.getKey();
+				if (isWriteable(dest, name)) {
+					try {
+						if (dest instanceof DynaBean) {
+							((DynaBean) dest).set(name, entry.getValue());
+						} else {
+							setSimpleProperty(dest, name, entry.getValue());
+						}
+					} catch (final NoSuchMethodException e) {
+						if (log.isDebugEnabled()) {
+							log.debug("Error writing to '" + name + "' on class '" + dest.getClass() + "'", e);
+						}
+					}
+				}
+			}
+		} else /* if (orig is a Record) */ {
+			final RecordMetadata origMetadata = RecordMetadata.forClass(orig.getClass());
+			boolean isRecord = origMetadata != null;
+			final Object[] origDescriptors = isRecord ? origMetadata.components() : getPropertyDescriptors(orig);
+			for (Object origDescriptor : origDescriptors) {
+//				@SuppressWarnings("preview")
+//            	final String name = (switch (origDescriptor) {
+//				case PropertyDescriptor p -> p.getName();
+//				case RecordComponent r -> r.getName();
+//				default -> throw new IllegalArgumentException("Unexpected value: " + origDescriptor);
+//				});
+				String name = null;
+				if (origDescriptor instanceof PropertyDescriptor) {
+					name = ((PropertyDescriptor) origDescriptor).getName();
+				} else if (origDescriptor instanceof RecordMetadata.Component) {
+					name = ((RecordMetadata.Component) origDescriptor).name;
+				}
+				if ((isReadable(orig, name) || isRecord) && isWriteable(dest, name)) {
+					try {
+						final Object value = isRecord
+								? ((RecordMetadata.Component) origDescriptor).reader.apply(orig)
+								: getSimpleProperty(orig, name);
+						if (dest instanceof DynaBean) {
+							((DynaBean) dest).set(name, value);
+						} else {
+							setSimpleProperty(dest, name, value);
+						}
+					} catch (final NoSuchMethodException e) {
+						if (log.isDebugEnabled()) {
+							log.debug("Error writing to '" + name + "' on class '" + dest.getClass() + "'", e);
+						}
+					}
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
+
+/**
+ * <p>
+ * A {@link BeanIntrospector} publishing the components of record classes as
+ * read-only properties.
+ * </p>
+ *
+ * <p>
+ * Record components are read by accessors named after them, such as
+ * <code>name()</code>, which standard JavaBeans introspection does not
+ * recognize. For a record class, this introspector adds one property
+ * descriptor per component, whose read method is the component accessor and
+ * which has no write method. Properties already found by a previous
+ * introspector, for instance from a <code>getName()</code> method or a
+ * <code>BeanInfo</code> class, are left unchanged. Classes that are not records
+ * are ignored.
+ * </p>
+ *
+ * <p>
+ * The descriptors are stored in the descriptor cache of the
+ * {@link PropertyUtilsBean} like any other, so reading record properties through
+ * <code>getProperty()</code> or <code>getNestedProperty()</code> costs a cached
+ * descriptor lookup. {@link PropertyUtilsBeanImpl} registers this introspector
+ * by default.
+ * </p>
+ *
+ * @version $Id$
+ */
+public final class RecordBeanIntrospector implements BeanIntrospector {
+
+	/** The singleton instance of this class. */
+	public static final BeanIntrospector INSTANCE = new RecordBeanIntrospector();
+
+	/**
+	 * Private constructor so that no instances can be created.
+	 */
+	private RecordBeanIntrospector() {
+	}
+
+	/**
+	 * Perform introspection of a class, adding a read-only property for every
+	 * component of a record class.
+	 *
+	 * @param icontext The introspection context
+	 * @throws IntrospectionException if a component accessor cannot be used as
+	 *                                a read method
+	 */
+	@Override
+	public void introspect(final IntrospectionContext icontext) throws IntrospectionException {
+		final RecordMetadata metadata = RecordMetadata.forClass(icontext.getTargetClass());
+		if (metadata == null) {
+			return;
+		}
+		for (final RecordMetadata.Component component : metadata.components()) {
+			if (!icontext.hasProperty(component.name)) {
+				icontext.addPropertyDescriptor(new PropertyDescriptor(component.name, component.accessor, null));
+			}
+		}
+	}
+
+}
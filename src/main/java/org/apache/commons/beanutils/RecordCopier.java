@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.beanutils;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * <p>
+ * Reflection-free copier from one origin class to one destination class.
+ * </p>
+ *
+ * <p>
+ * Implementations are generated from {@link RecordMapping} annotations and
+ * registered in <code>META-INF/services/org.apache.commons.beanutils.RecordCopier</code>.
+ * Every copier implements either {@link ToBean}, for a JavaBean destination,
+ * or {@link ToRecord}, for a record destination. {@link BeanUtilsBeanImpl}
+ * looks them up through the class loader of the origin class and falls back to
+ * reflection for class pairs without a copier.
+ * </p>
+ *
+ * @param <S> Origin type, a JavaBean or a record
+ * @param <D> Destination type, a JavaBean or a record
+ * @version $Id$
+ */
+public interface RecordCopier<S, D> {
+
+	/**
+	 * Copier to a JavaBean destination.
+	 *
+	 * @param <S> Origin type, a JavaBean or a record
+	 * @param <D> Destination JavaBean type
+	 */
+	interface ToBean<S, D> extends RecordCopier<S, D> {
+
+		/**
+		 * Copy the properties of <code>orig</code> to <code>dest</code>, with the
+		 * semantics of {@link BeanUtilsBeanImpl#copyProperties(Object, Object)}.
+		 *
+		 * @param dest      Destination bean whose properties are modified
+		 * @param orig      Origin bean whose properties are retrieved
+		 * @param beanUtils Converter of the values
+		 * @throws IllegalArgumentException  if a converted value does not match
+		 *                                   the destination property type
+		 * @throws InvocationTargetException if an accessor or setter throws an
+		 *                                   exception
+		 */
+		void copyProperties(D dest, S orig, BeanUtilsBeanImpl beanUtils) throws InvocationTargetException;
+
+	}
+
+	/**
+	 * Copier to a record destination.
+	 *
+	 * @param <S> Origin type, a JavaBean or a record
+	 * @param <D> Destination record type
+	 */
+	interface ToRecord<S, D> extends RecordCopier<S, D> {
+
+		/**
+		 * Create the record holding the properties of <code>orig</code>, with the
+		 * semantics of {@link BeanUtilsBeanImpl#copyProperties(Class, Object, java.util.Map)}
+		 * without overrides.
+		 *
+		 * @param orig Origin bean whose properties are retrieved
+		 * @return the new record
+		 * @throws InvocationTargetException if an accessor throws an exception
+		 */
+		D newInstance(S orig) throws InvocationTargetException;
+
+	}
+
+	/**
+	 * Return the origin class.
+	 */
+	Class<S> getOriginType();
+
+	/**
+	 * Return the destination class.
+	 */
+	Class<D> getDestinationType();
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * Compiled, immutable plan for copying the components of one record class to
+ * another record class.
+ * </p>
+ *
+ * <p>
+ * Every destination component is bound once to the accessor of the origin
+ * component with the same name, if any, and marked for conversion when the
+ * origin component class cannot be assigned to it. A copy is then a single
+ * pass over the bound accessors: values of assignable components are passed
+ * to the canonical constructor as they are, so unchanged references are shared
+ * between the two records, and only the other values are converted.
+ * </p>
+ *
+ * <p>
+ * The plan also holds the {@link RecordCopier.ToRecord} generated for the class pair, if
+ * any.
+ * </p>
+ *
+ * @version $Id$
+ * @see BeanUtilsBeanImpl#copyRecord(Class, Object)
+ */
+final class RecordCopyPlan {
+
+	private final RecordMetadata metadata;
+
+	/** Origin component accessors, aligned with the destination components */
+	private final Function<Object, Object>[] readers;
+
+	/** Conversion target of every component, <code>null</code> if assignable */
+	private final Class<?>[] conversions;
+
+	/** Generated copier of the class pair, or <code>null</code> */
+	private final RecordCopier.ToRecord<Object, Object> copier;
+
+	/**
+	 * Compile the plan copying <code>origMetadata</code> records to
+	 * <code>metadata</code> records.
+	 *
+	 * @param metadata     Destination record class
+	 * @param origMetadata Origin record class
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	RecordCopyPlan(final RecordMetadata metadata, final RecordMetadata origMetadata) {
+		this.metadata = metadata;
+		final RecordMetadata.Component[] components = metadata.components();
+		this.readers = new Function[components.length];
+		this.conversions = new Class<?>[components.length];
+		for (int i = 0; i < components.length; i++) {
+			final RecordMetadata.Component origComponent = origMetadata.component(components[i].name);
+			if (origComponent == null) {
+				continue;
+			}
+			readers[i] = origComponent.reader;
+			if (!ConvertUtils.primitiveToWrapper(components[i].type)
+					.isAssignableFrom(ConvertUtils.primitiveToWrapper(origComponent.type))) {
+				conversions[i] = components[i].type;
+			}
+		}
+		this.copier = GeneratedCopiers.findToRecord(origMetadata.recordClass(), metadata.recordClass());
+	}
+
+	/**
+	 * Create the destination record holding the components of
+	 * <code>orig</code>, through the generated copier if any.
+	 *
+	 * @param orig      Origin record, an instance of the planned origin class
+	 * @param beanUtils Converter of the components that are not assignable
+	 * @return the new record
+	 * @throws IllegalArgumentException  if a converted value does not match the
+	 *                                   type of its component
+	 * @throws InvocationTargetException if an accessor throws an exception
+	 */
+	Object copy(final Object orig, final BeanUtilsBeanImpl beanUtils) throws InvocationTargetException {
+		if (copier != null) {
+			return copier.newInstance(orig);
+		}
+		final Object[] args = metadata.newArguments();
+		for (int i = 0; i < readers.length; i++) {
+			if (readers[i] == null) {
+				continue;
+			}
+			final Object value;
+			try {
+				value = readers[i].apply(orig);
+			} catch (final Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+			args[i] = value != null && conversions[i] != null ? beanUtils.convert(value, conversions[i]) : value;
+		}
+		return metadata.newInstance(args);
+	}
+
+}
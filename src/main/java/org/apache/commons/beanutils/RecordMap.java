@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * <p>
+ * Read-only <code>Map</code> view of a record, keyed by component name.
+ * </p>
+ *
+ * <p>
+ * Nothing is copied: keys are resolved through the component index of the
+ * {@link RecordMetadata}, and values are read through the component accessors
+ * on every lookup, so creating the view costs a single allocation whatever the
+ * number of components. Entries are iterated in declaration order. Every
+ * mutating operation throws <code>UnsupportedOperationException</code>.
+ * </p>
+ *
+ * @version $Id$
+ * @see BeanUtilsBeanImpl#asMap(Object)
+ */
+final class RecordMap extends AbstractMap<String, Object> {
+
+	private final RecordMetadata metadata;
+
+	private final Object record;
+
+	RecordMap(final RecordMetadata metadata, final Object record) {
+		this.metadata = metadata;
+		this.record = record;
+	}
+
+	@Override
+	public int size() {
+		return metadata.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return metadata.size() == 0;
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		return key instanceof String && metadata.component((String) key) != null;
+	}
+
+	@Override
+	public Object get(final Object key) {
+		final RecordMetadata.Component component = key instanceof String ? metadata.component((String) key) : null;
+		return component != null ? component.reader.apply(record) : null;
+	}
+
+	@Override
+	public Set<String> keySet() {
+		return new AbstractSet<String>() {
+			@Override
+			public Iterator<String> iterator() {
+				return new ComponentIterator<String>() {
+					@Override
+					String get(final RecordMetadata.Component component) {
+						return component.name;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return metadata.size();
+			}
+
+			@Override
+			public boolean contains(final Object key) {
+				return containsKey(key);
+			}
+		};
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<Entry<String, Object>>() {
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				return new ComponentIterator<Entry<String, Object>>() {
+					@Override
+					Entry<String, Object> get(final RecordMetadata.Component component) {
+						return new SimpleImmutableEntry<String, Object>(component.name, component.reader.apply(record));
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return metadata.size();
+			}
+		};
+	}
+
+	/**
+	 * Iterator over the components in declaration order.
+	 */
+	private abstract class ComponentIterator<E> implements Iterator<E> {
+		private int index;
+
+		abstract E get(RecordMetadata.Component component);
+
+		@Override
+		public boolean hasNext() {
+			return index < metadata.size();
+		}
+
+		@Override
+		public E next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return get(metadata.components()[index++]);
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("remove()");
+		}
+	}
+
+}
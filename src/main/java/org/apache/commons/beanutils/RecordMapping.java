@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.beanutils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Requests a {@link RecordCopier} generated at compile time for copies from
+ * <code>from</code> instances to <code>to</code> instances.
+ * </p>
+ *
+ * <p>
+ * The copier is generated by
+ * <code>org.apache.commons.beanutils.processor.RecordMappingProcessor</code> in
+ * the package of the annotated type, and registered as a service so that
+ * {@link BeanUtilsBeanImpl} uses it instead of reflection:
+ * </p>
+ * <ul>
+ * <li>if <code>to</code> is a JavaBean, for
+ * {@link BeanUtilsBeanImpl#copyProperties(Object, Object)};</li>
+ * <li>if <code>to</code> is a record, for
+ * {@link BeanUtilsBeanImpl#copyProperties(Class, Object, java.util.Map)} without
+ * overrides.</li>
+ * </ul>
+ *
+ * <p>
+ * Both classes must be accessible from the package of the annotated type and
+ * must not declare type parameters.
+ * </p>
+ *
+ * <p>
+ * The processor is not part of the runtime jar, so it never runs implicitly on
+ * the compilations of its users. It is shipped in the jar with the
+ * <code>processor</code> classifier, to be declared where copiers are wanted:
+ * </p>
+ *
+ * <pre>
+ * &lt;annotationProcessorPaths&gt;
+ *   &lt;path&gt;
+ *     &lt;groupId&gt;org.deking.patch&lt;/groupId&gt;
+ *     &lt;artifactId&gt;commons-beanutils-record-support&lt;/artifactId&gt;
+ *     &lt;version&gt;1.9.4&lt;/version&gt;
+ *     &lt;classifier&gt;processor&lt;/classifier&gt;
+ *   &lt;/path&gt;
+ * &lt;/annotationProcessorPaths&gt;
+ * </pre>
+ *
+ * @version $Id$
+ * @see RecordCopier
+ */
+@Documented
+@Repeatable(RecordMappings.class)
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface RecordMapping {
+
+	/**
+	 * Origin class: a JavaBean or a record.
+	 */
+	Class<?> from();
+
+	/**
+	 * Destination class: a JavaBean or a record.
+	 */
+	Class<?> to();
+
+}
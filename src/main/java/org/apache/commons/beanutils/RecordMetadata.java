@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import org.deking.util.ReflectionUtils;
+import org.deking.util.common.RecComponent;
+
+/**
+ * <p>
+ * Immutable description of a record class: its components in declaration
+ * order, with their names, raw classes, generic types and accessors, and its
+ * canonical constructor.
+ * </p>
+ *
+ * <p>
+ * Component accessors are bound once as functions spun by
+ * <code>LambdaMetafactory</code>, with primitive-specialized variants for
+ * <code>int</code>, <code>long</code> and <code>double</code> components. The
+ * canonical constructor is bound once as a {@link MethodHandle} that spreads
+ * an argument array, so {@link #newInstance(Object[])} avoids the argument
+ * checks of <code>Constructor.newInstance</code> and is inlined by the JIT like
+ * a direct call.
+ * </p>
+ *
+ * <p>
+ * Instances are computed once per record class and registered through a
+ * {@link ClassValue}, so the metadata is stored with the record class itself and
+ * becomes unreachable together with it when its class loader is discarded, as
+ * happens on application server redeployments.
+ * </p>
+ *
+ * @version $Id$
+ */
+final class RecordMetadata {
+
+	private static final ClassValue<RecordMetadata> REGISTRY = new ClassValue<RecordMetadata>() {
+		@Override
+		protected RecordMetadata computeValue(final Class<?> type) {
+			return RecordSupport.isRecord(type) ? new RecordMetadata(type) : null;
+		}
+	};
+
+	/**
+	 * A single record component.
+	 */
+	static final class Component {
+		final String name;
+		/** Raw class of the component */
+		final Class<?> type;
+		final Type genericType;
+		/** Position in the canonical constructor */
+		final int index;
+		final Method accessor;
+		/** Boxing accessor function */
+		final Function<Object, Object> reader;
+		/** Accessor function for <code>int</code> components, otherwise <code>null</code> */
+		final ToIntFunction<Object> intReader;
+		/** Accessor function for <code>long</code> components, otherwise <code>null</code> */
+		final ToLongFunction<Object> longReader;
+		/** Accessor function for <code>double</code> components, otherwise <code>null</code> */
+		final ToDoubleFunction<Object> doubleReader;
+
+		Component(final String name, final Class<?> type, final Type genericType, final int index,
+				final Method accessor) throws IllegalAccessException {
+			this.name = name;
+			this.type = type;
+			this.genericType = genericType;
+			this.index = index;
+			this.accessor = accessor;
+			this.reader = Accessors.reader(accessor);
+			this.intReader = type == int.class ? Accessors.intReader(accessor) : null;
+			this.longReader = type == long.class ? Accessors.longReader(accessor) : null;
+			this.doubleReader = type == double.class ? Accessors.doubleReader(accessor) : null;
+		}
+	}
+
+	private final Class<?> recordClass;
+
+	private final Component[] components;
+
+	/** Components keyed by name */
+	private final Map<String, Component> byName;
+
+	private final Constructor<?> constructor;
+
+	/** Default value of every component, in declaration order */
+	private final Object[] defaults;
+
+	/** Canonical constructor spreading an <code>Object[]</code>, typed (Object[])Object */
+	private final MethodHandle constructorHandle;
+
+	private RecordMetadata(final Class<?> recordClass) {
+		final RecComponent[] recComponents = RecordSupport.components(recordClass);
+		final Component[] components = new Component[recComponents.length];
+		final Class<?>[] types = new Class<?>[recComponents.length];
+		final Object[] defaults = new Object[recComponents.length];
+		for (int i = 0; i < recComponents.length; i++) {
+			final String name = recComponents[i].name();
+			final Method accessor;
+			try {
+				accessor = recordClass.getDeclaredMethod(name);
+			} catch (final NoSuchMethodException e) {
+				throw new IllegalArgumentException("No accessor for component '" + name + "' of record class '"
+						+ recordClass.getName() + "'", e);
+			}
+			makeAccessible(accessor);
+			types[i] = accessor.getReturnType();
+			defaults[i] = ReflectionUtils.getDefaultValue(types[i]);
+			try {
+				components[i] = new Component(name, types[i], recComponents[i].type(), i, accessor);
+			} catch (final IllegalAccessException e) {
+				throw new IllegalArgumentException("Cannot access component '" + name + "' of record class '"
+						+ recordClass.getName() + "'", e);
+			}
+		}
+		try {
+			this.constructor = recordClass.getDeclaredConstructor(types);
+		} catch (final NoSuchMethodException e) {
+			throw new IllegalArgumentException("No canonical constructor for record class '" + recordClass.getName()
+					+ "'", e);
+		}
+		makeAccessible(constructor);
+		try {
+			this.constructorHandle = RecordSupport.lookup(recordClass).unreflectConstructor(constructor)
+					.asSpreader(Object[].class, types.length)
+					.asType(MethodType.methodType(Object.class, Object[].class));
+		} catch (final IllegalAccessException e) {
+			throw new IllegalArgumentException("Cannot access the canonical constructor of record class '"
+					+ recordClass.getName() + "'", e);
+		}
+		this.recordClass = recordClass;
+		this.components = components;
+		this.byName = new HashMap<String, Component>(components.length * 2);
+		for (final Component component : components) {
+			byName.put(component.name, component);
+		}
+		this.defaults = defaults;
+	}
+
+	private static void makeAccessible(final AccessibleObject member) {
+		try {
+			member.setAccessible(true);
+		} catch (final RuntimeException e) {
+			// Left to the access check of the caller
+		}
+	}
+
+	/**
+	 * Return the metadata of the specified class.
+	 *
+	 * @param type Class to describe
+	 * @return the metadata of <code>type</code>, or <code>null</code> if it is not
+	 *         a record class
+	 */
+	static RecordMetadata forClass(final Class<?> type) {
+		return REGISTRY.get(type);
+	}
+
+	/**
+	 * Return <code>true</code> if the specified class is a record class.
+	 *
+	 * @param type Class to test
+	 * @return whether <code>type</code> is a record class
+	 */
+	static boolean isRecord(final Class<?> type) {
+		return REGISTRY.get(type) != null;
+	}
+
+	Class<?> recordClass() {
+		return recordClass;
+	}
+
+	/**
+	 * Return the components in declaration order. The returned array is shared
+	 * and must not be modified.
+	 */
+	Component[] components() {
+		return components;
+	}
+
+	/**
+	 * Return the component with the specified name.
+	 *
+	 * @param name Component name
+	 * @return the component, or <code>null</code> if there is none
+	 */
+	Component component(final String name) {
+		return byName.get(name);
+	}
+
+	int size() {
+		return components.length;
+	}
+
+	Constructor<?> constructor() {
+		return constructor;
+	}
+
+	/**
+	 * Return a new constructor argument array prefilled with the default value of
+	 * every component: <code>null</code>, <code>false</code> or zero.
+	 */
+	Object[] newArguments() {
+		return defaults.clone();
+	}
+
+	/**
+	 * Invoke the canonical constructor.
+	 *
+	 * @param args Constructor arguments, one per component in declaration order
+	 * @return the new record
+	 * @throws IllegalArgumentException if an argument does not match the type of
+	 *                                  its component
+	 */
+	Object newInstance(final Object[] args) {
+		try {
+			return constructorHandle.invokeExact(args);
+		} catch (final ClassCastException e) {
+			throw checkArguments(args, e);
+		} catch (final NullPointerException e) {
+			throw checkArguments(args, e);
+		} catch (final RuntimeException e) {
+			throw e;
+		} catch (final Error e) {
+			throw e;
+		} catch (final Throwable e) {
+			// Canonical constructors cannot declare checked exceptions
+			throw new UndeclaredThrowableException(e);
+		}
+	}
+
+	/**
+	 * Tell an argument mismatch from an exception thrown by the constructor body.
+	 */
+	private RuntimeException checkArguments(final Object[] args, final RuntimeException e) {
+		if (args.length != components.length) {
+			return new IllegalArgumentException("Record class '" + recordClass.getName() + "' expects "
+					+ components.length + " arguments, got " + args.length, e);
+		}
+		for (final Component component : components) {
+			final Object arg = args[component.index];
+			if (arg == null ? component.type.isPrimitive()
+					: !ConvertUtils.primitiveToWrapper(component.type).isInstance(arg)) {
+				return new IllegalArgumentException("Cannot pass a value of type '"
+						+ (arg == null ? "null" : arg.getClass().getName()) + "' to component '" + component.name
+						+ "' of record class '" + recordClass.getName() + "' - argument type mismatch", e);
+			}
+		}
+		return e;
+	}
+
+}
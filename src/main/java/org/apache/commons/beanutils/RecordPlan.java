@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * Compiled, immutable plan for reading the components of one record class from
+ * instances of one origin class (a standard JavaBean or a record).
+ * </p>
+ *
+ * <p>
+ * The readable properties of the origin class are indexed by name once, when
+ * the plan is compiled, and every record component is bound to the accessor of
+ * the origin property with the same name, if any. Filling a component is then a
+ * direct array access instead of a scan over the origin descriptors.
+ * </p>
+ *
+ * <p>
+ * The plan also holds the {@link RecordCopier.ToRecord} generated for the class pair, if
+ * any, which creates the record without reflection when there are no overrides.
+ * </p>
+ *
+ * @version $Id$
+ * @see BeanUtilsBeanImpl#copyProperties(Class, Object, Map)
+ */
+final class RecordPlan {
+
+	private final RecordMetadata metadata;
+
+	/** Origin accessors, aligned with the record components */
+	private final Function<Object, Object>[] readers;
+
+	/** Generated copier of the class pair, or <code>null</code> */
+	private final RecordCopier.ToRecord<Object, Object> copier;
+
+	private RecordPlan(final RecordMetadata metadata, final Function<Object, Object>[] readers,
+			final RecordCopier.ToRecord<Object, Object> copier) {
+		this.metadata = metadata;
+		this.readers = readers;
+		this.copier = copier;
+	}
+
+	/**
+	 * Compile the plan reading <code>metadata</code> components from
+	 * <code>origClass</code> instances.
+	 *
+	 * @param propertyUtils Introspection support of the owning BeanUtilsBean
+	 * @param metadata      Destination record class
+	 * @param origClass     Origin JavaBean or record class
+	 * @return the compiled plan
+	 * @throws IllegalAccessException if an accessor cannot be bound
+	 */
+	static RecordPlan compile(final PropertyUtilsBean propertyUtils, final RecordMetadata metadata,
+			final Class<?> origClass) throws IllegalAccessException {
+		final Map<String, Function<Object, Object>> origReaders = new HashMap<String, Function<Object, Object>>();
+		final RecordMetadata origMetadata = RecordMetadata.forClass(origClass);
+		if (origMetadata != null) {
+			for (final RecordMetadata.Component component : origMetadata.components()) {
+				origReaders.put(component.name, component.reader);
+			}
+		} else {
+			for (final PropertyDescriptor descriptor : propertyUtils.getPropertyDescriptors(origClass)) {
+				if ("class".equals(descriptor.getName())) {
+					continue; // No point in trying to set an object's class
+				}
+				final Method reader = MethodUtils.getAccessibleMethod(origClass, descriptor.getReadMethod());
+				if (reader != null) {
+					origReaders.put(descriptor.getName(), Accessors.reader(reader));
+				}
+			}
+		}
+		final RecordMetadata.Component[] components = metadata.components();
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		final Function<Object, Object>[] readers = new Function[components.length];
+		for (int i = 0; i < components.length; i++) {
+			readers[i] = origReaders.get(components[i].name);
+		}
+		return new RecordPlan(metadata, readers, GeneratedCopiers.findToRecord(origClass, metadata.recordClass()));
+	}
+
+	RecordMetadata metadata() {
+		return metadata;
+	}
+
+	/**
+	 * Return the generated copier of the class pair, or <code>null</code>.
+	 */
+	RecordCopier.ToRecord<Object, Object> copier() {
+		return copier;
+	}
+
+	/**
+	 * Return <code>true</code> if the origin class has a readable property for
+	 * the component at <code>index</code>.
+	 */
+	boolean isReadable(final int index) {
+		return readers[index] != null;
+	}
+
+	/**
+	 * Read the origin property bound to the component at <code>index</code>.
+	 *
+	 * @param index Component index
+	 * @param orig  Origin bean, an instance of the planned origin class
+	 * @return the property value
+	 * @throws InvocationTargetException if the accessor throws an exception
+	 */
+	Object read(final int index, final Object orig) throws InvocationTargetException {
+		try {
+			return readers[index].apply(orig);
+		} catch (final Throwable e) {
+			throw new InvocationTargetException(e);
+		}
+	}
+
+	/**
+	 * Create the record holding the properties of <code>orig</code>, through the
+	 * generated copier if any.
+	 *
+	 * @param orig Origin bean, an instance of the planned origin class
+	 * @param args Constructor argument buffer, whose components not readable on
+	 *             the origin hold their default value
+	 * @return the new record
+	 * @throws IllegalArgumentException  if a property does not match the type of
+	 *                                   its component
+	 * @throws InvocationTargetException if an accessor throws an exception
+	 */
+	Object newRecord(final Object orig, final Object[] args) throws InvocationTargetException {
+		if (copier != null) {
+			return copier.newInstance(orig);
+		}
+		for (int index = 0; index < readers.length; index++) {
+			if (readers[index] != null) {
+				args[index] = read(index, orig);
+			}
+		}
+		// The constructor handle spreads the buffer, the record keeps no reference to it
+		return metadata.newInstance(args);
+	}
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.lang.invoke.MethodHandles;
+
+import org.deking.util.RecordInvokeUtils;
+import org.deking.util.common.RecComponent;
+
+/**
+ * <p>
+ * Platform access to records and to the members of user classes.
+ * </p>
+ *
+ * <p>
+ * This is the Java 8 implementation, which reaches the record API of the running
+ * JVM through the <code>org.deking.util</code> reflection helpers. Java 16 and
+ * later load the variant packaged under <code>META-INF/versions/16</code>, which
+ * uses <code>java.lang.Class</code> directly.
+ * </p>
+ *
+ * @version $Id$
+ */
+final class RecordSupport {
+
+	private RecordSupport() {
+	}
+
+	/**
+	 * Return <code>true</code> if the specified class is a record class.
+	 */
+	static boolean isRecord(final Class<?> type) {
+		return RecordInvokeUtils.isRecord(type);
+	}
+
+	/**
+	 * Return the components of the specified record class in declaration order.
+	 */
+	static RecComponent[] components(final Class<?> recordClass) {
+		return RecordInvokeUtils.recordComponents(recordClass, null);
+	}
+
+	/**
+	 * Return the lookup used to bind members of the specified class.
+	 */
+	static MethodHandles.Lookup lookup(final Class<?> type) {
+		return MethodHandles.lookup();
+	}
+
+	/**
+	 * Define a hidden class in the package of the lookup class.
+	 *
+	 * @return the lookup of the new class, or <code>null</code> as hidden classes
+	 *         need Java 15
+	 */
+	static MethodHandles.Lookup defineHiddenClass(final MethodHandles.Lookup lookup, final byte[] bytes)
+			throws IllegalAccessException {
+		return null;
+	}
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Iterator creating one record per row of a <code>ResultSet</code>.
+ * </p>
+ *
+ * <p>
+ * Column labels are matched to component names, ignoring case, once, from the
+ * <code>ResultSetMetaData</code>. Every row is then read by column index:
+ * primitive components through the typed getter of their type
+ * (<code>getInt</code>, <code>getLong</code>, ...), other components through
+ * <code>getObject</code>, converted by the owning BeanUtilsBean when the value
+ * does not have the component type. Components without a column receive their
+ * default value.
+ * </p>
+ *
+ * <p>
+ * Rows are read one at a time as the iterator advances, so the result set is
+ * never buffered. The iterator does not close the result set.
+ * </p>
+ *
+ * @param <T> Record type
+ * @version $Id$
+ * @see BeanUtilsBeanImpl#resultSetIterator(Class, ResultSet)
+ */
+final class ResultSetRecordIterator<T> implements Iterator<T> {
+
+	private final BeanUtilsBeanImpl beanUtils;
+
+	private final Class<T> recordClass;
+
+	private final RecordMetadata metadata;
+
+	private final ResultSet resultSet;
+
+	/** Column index of every component, 0 if none */
+	private final int[] columns;
+
+	/** Constructor arguments, unbound components holding their default value */
+	private final Object[] args;
+
+	/** Whether the result set is positioned on a row not returned yet */
+	private Boolean hasNext;
+
+	ResultSetRecordIterator(final BeanUtilsBeanImpl beanUtils, final Class<T> recordClass,
+			final RecordMetadata metadata, final ResultSet resultSet) throws SQLException {
+		this.beanUtils = beanUtils;
+		this.recordClass = recordClass;
+		this.metadata = metadata;
+		this.resultSet = resultSet;
+		final RecordMetadata.Component[] components = metadata.components();
+		final Map<String, Integer> indexes = new HashMap<String, Integer>();
+		for (final RecordMetadata.Component component : components) {
+			indexes.put(component.name.toLowerCase(Locale.ROOT), component.index);
+		}
+		this.columns = new int[components.length];
+		final ResultSetMetaData resultSetMetaData = resultSet.getMetaData();
+		for (int column = resultSetMetaData.getColumnCount(); column > 0; column--) {
+			final Integer index = indexes.get(resultSetMetaData.getColumnLabel(column).toLowerCase(Locale.ROOT));
+			if (index != null) {
+				columns[index] = column;
+			}
+		}
+		this.args = metadata.newArguments();
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (hasNext == null) {
+			try {
+				hasNext = resultSet.next();
+			} catch (final SQLException e) {
+				throw new RuntimeException("hasNext():  SQLException:  " + e, e);
+			}
+		}
+		return hasNext;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		hasNext = null;
+		try {
+			final RecordMetadata.Component[] components = metadata.components();
+			for (int i = 0; i < columns.length; i++) {
+				if (columns[i] != 0) {
+					args[i] = read(components[i].type, columns[i]);
+				}
+			}
+		} catch (final SQLException e) {
+			throw new RuntimeException("next():  SQLException:  " + e, e);
+		}
+		// The constructor handle spreads the buffer, the record keeps no reference to it
+		return recordClass.cast(metadata.newInstance(args));
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("remove()");
+	}
+
+	/**
+	 * Read the value of a component from the current row.
+	 */
+	private Object read(final Class<?> type, final int column) throws SQLException {
+		if (type == int.class) {
+			return resultSet.getInt(column);
+		} else if (type == long.class) {
+			return resultSet.getLong(column);
+		} else if (type == double.class) {
+			return resultSet.getDouble(column);
+		} else if (type == boolean.class) {
+			return resultSet.getBoolean(column);
+		} else if (type == float.class) {
+			return resultSet.getFloat(column);
+		} else if (type == short.class) {
+			return resultSet.getShort(column);
+		} else if (type == byte.class) {
+			return resultSet.getByte(column);
+		} else if (type == String.class) {
+			return resultSet.getString(column);
+		}
+		final Object value = resultSet.getObject(column);
+		return value == null || type.isInstance(value) ? value : beanUtils.convert(value, type);
+	}
+
+}
@@ -0,0 +1,515 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * <p>
+ * Annotation processor generating a
+ * <code>org.apache.commons.beanutils.RecordCopier</code> for every
+ * <code>@RecordMapping</code>.
+ * </p>
+ *
+ * <p>
+ * A copier to a JavaBean implements <code>RecordCopier.ToBean</code>, a copier to
+ * a record <code>RecordCopier.ToRecord</code>. Generated copiers follow the
+ * rules of <code>BeanUtilsBeanImpl</code>: properties are matched by name,
+ * <code>class</code> is skipped, values copied to a JavaBean are converted
+ * through <code>BeanUtilsBeanImpl.convert</code> and values passed to a record
+ * constructor are passed as is, missing components receiving their default
+ * value. JavaBean properties are found from public
+ * <code>getXxx</code>/<code>isXxx</code> and <code>setXxx</code> methods;
+ * <code>BeanInfo</code> customizations are not taken into account.
+ * </p>
+ *
+ * @version $Id$
+ */
+@SupportedAnnotationTypes({ RecordMappingProcessor.MAPPING, RecordMappingProcessor.MAPPINGS })
+public class RecordMappingProcessor extends AbstractProcessor {
+
+	static final String MAPPING = "org.apache.commons.beanutils.RecordMapping";
+
+	static final String MAPPINGS = "org.apache.commons.beanutils.RecordMappings";
+
+	private static final String COPIER = "org.apache.commons.beanutils.RecordCopier";
+
+	private static final String SERVICE = "META-INF/services/" + COPIER;
+
+	private static final String INVOCATION_TARGET = "java.lang.reflect.InvocationTargetException";
+
+	/** Qualified names of the copiers generated by this compilation */
+	private final Set<String> copiers = new TreeSet<String>();
+
+	/**
+	 * A readable property of the origin class.
+	 */
+	private static final class Property {
+		/** Read expression, relative to the origin */
+		final String read;
+		final TypeMirror type;
+
+		Property(final String read, final TypeMirror type) {
+			this.read = read;
+			this.type = type;
+		}
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+		if (roundEnv.processingOver()) {
+			writeServices();
+			return false;
+		}
+		final Set<Element> processed = new HashSet<Element>();
+		for (final TypeElement annotation : annotations) {
+			for (final Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (!processed.add(element)) {
+					continue;
+				}
+				for (final AnnotationMirror mirror : element.getAnnotationMirrors()) {
+					final String name = ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName()
+							.toString();
+					if (MAPPING.equals(name)) {
+						generate(element, mirror);
+					} else if (MAPPINGS.equals(name)) {
+						for (final Object value : (List<?>) value(mirror, "value")) {
+							generate(element, (AnnotationMirror) ((AnnotationValue) value).getValue());
+						}
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	private static Object value(final AnnotationMirror mirror, final String name) {
+		for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror
+				.getElementValues().entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals(name)) {
+				return entry.getValue().getValue();
+			}
+		}
+		return null;
+	}
+
+	private void generate(final Element annotated, final AnnotationMirror mapping) {
+		final Object from = value(mapping, "from");
+		final Object to = value(mapping, "to");
+		if (!(from instanceof DeclaredType) || !(to instanceof DeclaredType)) {
+			error(annotated, mapping, "@RecordMapping needs class literals for 'from' and 'to'");
+			return;
+		}
+		final TypeElement origin = (TypeElement) ((DeclaredType) from).asElement();
+		final TypeElement destination = (TypeElement) ((DeclaredType) to).asElement();
+		final Elements elements = processingEnv.getElementUtils();
+		final PackageElement packageElement = elements.getPackageOf(annotated);
+		for (final TypeElement type : new TypeElement[] { origin, destination }) {
+			if (!type.getTypeParameters().isEmpty()) {
+				error(annotated, mapping, "@RecordMapping does not support generic class " + type.getQualifiedName());
+				return;
+			}
+			if (!isAccessible(type, packageElement)) {
+				error(annotated, mapping, "Class " + type.getQualifiedName() + " is not accessible from package "
+						+ packageElement.getQualifiedName());
+				return;
+			}
+		}
+		final String packageName = packageElement.getQualifiedName().toString();
+		final String simpleName = flatName(origin) + "To" + flatName(destination) + "RecordCopier";
+		final String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+		if (copiers.contains(qualifiedName)) {
+			return;
+		}
+
+		final StringBuilder body = new StringBuilder();
+		final boolean toRecord = isRecord(destination);
+		if (toRecord) {
+			if (!writeNewInstance(body, annotated, mapping, origin, destination)) {
+				return;
+			}
+		} else {
+			writeCopyProperties(body, origin, destination);
+		}
+
+		final String originName = origin.getQualifiedName().toString();
+		final String destinationName = destination.getQualifiedName().toString();
+		final StringBuilder source = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+		source.append("/**\n * Copies {@link ").append(originName).append("} to {@link ").append(destinationName)
+				.append("}.\n * Generated by ").append(getClass().getName()).append(" - do not edit.\n */\n");
+		source.append("public final class ").append(simpleName).append(" implements ").append(COPIER)
+				.append(toRecord ? ".ToRecord<" : ".ToBean<").append(originName).append(", ")
+				.append(destinationName).append("> {\n\n");
+		source.append("\t@Override\n\tpublic Class<").append(originName).append("> getOriginType() {\n\t\treturn ")
+				.append(originName).append(".class;\n\t}\n\n");
+		source.append("\t@Override\n\tpublic Class<").append(destinationName)
+				.append("> getDestinationType() {\n\t\treturn ").append(destinationName).append(".class;\n\t}\n\n");
+		source.append(body);
+		source.append("}\n");
+
+		try {
+			final Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, annotated)
+					.openWriter();
+			try {
+				writer.write(source.toString());
+			} finally {
+				writer.close();
+			}
+		} catch (final IOException e) {
+			error(annotated, mapping, "Cannot write " + qualifiedName + ": " + e.getMessage());
+			return;
+		}
+		copiers.add(qualifiedName);
+	}
+
+	/**
+	 * Write <code>copyProperties</code> for a JavaBean destination, failing like
+	 * <code>BeanUtilsBeanImpl.copyProperties</code>: accessor and setter
+	 * exceptions are wrapped in an <code>InvocationTargetException</code>, and a
+	 * converted value that does not match the setter, such as a
+	 * <code>null</code> value for a primitive, throws an
+	 * <code>IllegalArgumentException</code>.
+	 */
+	private void writeCopyProperties(final StringBuilder body, final TypeElement origin,
+			final TypeElement destination) {
+		final Map<String, ExecutableElement> setters = setters(destination);
+		body.append("\t@Override\n\t@SuppressWarnings(\"unchecked\")\n\tpublic void copyProperties(final ")
+				.append(destination.getQualifiedName()).append(" dest, final ").append(origin.getQualifiedName())
+				.append(" orig,\n\t\t\tfinal org.apache.commons.beanutils.BeanUtilsBeanImpl beanUtils)")
+				.append(" throws ").append(INVOCATION_TARGET).append(" {\n");
+		body.append("\t\tObject value;\n");
+		final Types types = processingEnv.getTypeUtils();
+		for (final Map.Entry<String, Property> entry : properties(origin).entrySet()) {
+			final ExecutableElement setter = setters.get(entry.getKey());
+			if (setter == null) {
+				continue;
+			}
+			final TypeMirror type = memberType(destination, setter).getParameterTypes().get(0);
+			final boolean primitive = type.getKind().isPrimitive();
+			final String wrapperType = primitive ? types.boxedClass((PrimitiveType) type).getQualifiedName()
+					.toString() : types.erasure(type).toString();
+			body.append("\t\ttry {\n\t\t\tvalue = orig.").append(entry.getValue().read).append(";\n");
+			body.append("\t\t} catch (final Throwable e) {\n\t\t\tthrow new ").append(INVOCATION_TARGET)
+					.append("(e);\n\t\t}\n");
+			body.append("\t\tif (value != null) {\n\t\t\tvalue = beanUtils.convert(value, ")
+					.append(types.erasure(type)).append(".class);\n\t\t}\n");
+			body.append("\t\tif (").append(primitive ? "" : "value != null && ").append("!(value instanceof ")
+					.append(wrapperType).append(")) {\n\t\t\tthrow mismatch(\"").append(entry.getKey())
+					.append("\", value);\n\t\t}\n");
+			body.append("\t\ttry {\n\t\t\tdest.").append(setter.getSimpleName()).append("((")
+					.append(primitive ? wrapperType : type.toString()).append(") value);\n");
+			body.append("\t\t} catch (final Throwable e) {\n\t\t\tthrow new ").append(INVOCATION_TARGET)
+					.append("(e);\n\t\t}\n");
+		}
+		body.append("\t}\n\n");
+		body.append("\tprivate static IllegalArgumentException mismatch(final String name, final Object value) {\n")
+				.append("\t\treturn new IllegalArgumentException(\"Cannot set property '\" + name + \"' of class '")
+				.append(processingEnv.getElementUtils().getBinaryName(destination))
+				.append("' to a value of type '\"\n\t\t\t\t+ (value == null ? \"null\" : value.getClass().getName())")
+				.append(" + \"' - argument type mismatch\");\n\t}\n\n");
+	}
+
+	/**
+	 * Write <code>newInstance</code> for a record destination. The properties are
+	 * read before the constructor is called, so that accessor exceptions are
+	 * wrapped in an <code>InvocationTargetException</code> like in
+	 * <code>BeanUtilsBeanImpl.copyProperties</code>. A <code>null</code> wrapper
+	 * passed to a primitive component throws the
+	 * <code>IllegalArgumentException</code> of <code>RecordMetadata</code>.
+	 *
+	 * @return <code>false</code> if a property cannot be passed to its component
+	 */
+	private boolean writeNewInstance(final StringBuilder body, final Element annotated,
+			final AnnotationMirror mapping, final TypeElement origin, final TypeElement destination) {
+		final Map<String, Property> properties = properties(origin);
+		final Types types = processingEnv.getTypeUtils();
+		final StringBuilder locals = new StringBuilder();
+		final StringBuilder reads = new StringBuilder();
+		final StringBuilder checks = new StringBuilder();
+		final StringBuilder args = new StringBuilder();
+		int index = 0;
+		for (final Element component : destination.getEnclosedElements()) {
+			if (!"RECORD_COMPONENT".equals(component.getKind().name())) {
+				continue;
+			}
+			final String name = component.getSimpleName().toString();
+			final TypeMirror type = component.asType();
+			if (args.length() > 0) {
+				args.append(", ");
+			}
+			final Property property = properties.get(name);
+			if (property == null) {
+				args.append(defaultValue(type));
+			} else if (types.isAssignable(property.type, type)) {
+				final boolean unboxed = type.getKind().isPrimitive() && !property.type.getKind().isPrimitive();
+				locals.append("\t\tfinal ").append(unboxed ? property.type : type).append(" v").append(index)
+						.append(";\n");
+				reads.append("\t\t\tv").append(index).append(" = orig.").append(property.read).append(";\n");
+				if (unboxed) {
+					checks.append("\t\tif (v").append(index).append(" == null) {\n\t\t\tthrow mismatch(\"")
+							.append(name).append("\");\n\t\t}\n");
+				}
+				args.append('v').append(index);
+			} else {
+				error(annotated, mapping, "Property '" + name + "' of " + origin.getQualifiedName() + " ("
+						+ property.type + ") cannot be passed to component '" + name + "' of "
+						+ destination.getQualifiedName() + " (" + type + ")");
+				return false;
+			}
+			index++;
+		}
+		body.append("\t@Override\n\tpublic ").append(destination.getQualifiedName()).append(" newInstance(final ")
+				.append(origin.getQualifiedName()).append(" orig) throws ").append(INVOCATION_TARGET)
+				.append(" {\n").append(locals);
+		if (reads.length() > 0) {
+			body.append("\t\ttry {\n").append(reads).append("\t\t} catch (final Throwable e) {\n")
+					.append("\t\t\tthrow new ").append(INVOCATION_TARGET).append("(e);\n\t\t}\n");
+		}
+		body.append(checks).append("\t\treturn new ").append(destination.getQualifiedName()).append("(")
+				.append(args).append(");\n\t}\n\n");
+		if (checks.length() > 0) {
+			body.append("\tprivate static IllegalArgumentException mismatch(final String name) {\n")
+					.append("\t\treturn new IllegalArgumentException(\"Cannot pass a value of type 'null' to component '\"")
+					.append(" + name\n\t\t\t\t+ \"' of record class '")
+					.append(processingEnv.getElementUtils().getBinaryName(destination))
+					.append("' - argument type mismatch\");\n\t}\n\n");
+		}
+		return true;
+	}
+
+	/**
+	 * Return the readable properties of a JavaBean or record, by name.
+	 */
+	private Map<String, Property> properties(final TypeElement type) {
+		final Map<String, Property> properties = new LinkedHashMap<String, Property>();
+		if (isRecord(type)) {
+			for (final Element component : type.getEnclosedElements()) {
+				if ("RECORD_COMPONENT".equals(component.getKind().name())) {
+					properties.put(component.getSimpleName().toString(),
+							new Property(component.getSimpleName() + "()", component.asType()));
+				}
+			}
+			return properties;
+		}
+		for (final Element member : processingEnv.getElementUtils().getAllMembers(type)) {
+			if (member.getKind() != ElementKind.METHOD || !member.getModifiers().contains(Modifier.PUBLIC)
+					|| member.getModifiers().contains(Modifier.STATIC)) {
+				continue;
+			}
+			final ExecutableElement method = (ExecutableElement) member;
+			final String methodName = method.getSimpleName().toString();
+			final TypeMirror returnType = memberType(type, method).getReturnType();
+			if (!method.getParameters().isEmpty() || returnType.getKind() == TypeKind.VOID) {
+				continue;
+			}
+			String name = null;
+			if (methodName.startsWith("get") && methodName.length() > 3) {
+				name = decapitalize(methodName.substring(3));
+			} else if (methodName.startsWith("is") && methodName.length() > 2
+					&& returnType.getKind() == TypeKind.BOOLEAN) {
+				name = decapitalize(methodName.substring(2));
+			}
+			if (name == null || "class".equals(name)) {
+				continue; // No point in trying to set an object's class
+			}
+			if (!properties.containsKey(name) || methodName.startsWith("is")) {
+				properties.put(name, new Property(methodName + "()", returnType));
+			}
+		}
+		return properties;
+	}
+
+	/**
+	 * Return the public setters of a JavaBean, by property name.
+	 */
+	private Map<String, ExecutableElement> setters(final TypeElement type) {
+		final Map<String, ExecutableElement> setters = new LinkedHashMap<String, ExecutableElement>();
+		for (final Element member : processingEnv.getElementUtils().getAllMembers(type)) {
+			if (member.getKind() != ElementKind.METHOD || !member.getModifiers().contains(Modifier.PUBLIC)
+					|| member.getModifiers().contains(Modifier.STATIC)) {
+				continue;
+			}
+			final ExecutableElement method = (ExecutableElement) member;
+			final String methodName = method.getSimpleName().toString();
+			if (methodName.startsWith("set") && methodName.length() > 3 && method.getParameters().size() == 1
+					&& method.getReturnType().getKind() == TypeKind.VOID) {
+				final String name = decapitalize(methodName.substring(3));
+				if (!setters.containsKey(name)) {
+					setters.put(name, method);
+				}
+			}
+		}
+		return setters;
+	}
+
+	/**
+	 * Return the signature of an inherited method with the type arguments of the
+	 * superclasses substituted.
+	 */
+	private ExecutableType memberType(final TypeElement type, final ExecutableElement method) {
+		return (ExecutableType) processingEnv.getTypeUtils().asMemberOf((DeclaredType) type.asType(), method);
+	}
+
+	/**
+	 * Return <code>true</code> if generated code in <code>packageElement</code>
+	 * can refer to <code>type</code>.
+	 */
+	private boolean isAccessible(final TypeElement type, final PackageElement packageElement) {
+		final boolean samePackage = processingEnv.getElementUtils().getPackageOf(type).equals(packageElement);
+		for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+			final Set<Modifier> modifiers = element.getModifiers();
+			if (modifiers.contains(Modifier.PRIVATE) || !samePackage && !modifiers.contains(Modifier.PUBLIC)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isRecord(final TypeElement type) {
+		return "RECORD".equals(type.getKind().name());
+	}
+
+	/**
+	 * Same rule as <code>java.beans.Introspector.decapitalize</code>.
+	 */
+	private static String decapitalize(final String name) {
+		if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) {
+			return name;
+		}
+		return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+	}
+
+	private static String defaultValue(final TypeMirror type) {
+		switch (type.getKind()) {
+		case BOOLEAN:
+			return "false";
+		case CHAR:
+			return "(char) 0";
+		case BYTE:
+			return "(byte) 0";
+		case SHORT:
+			return "(short) 0";
+		case INT:
+			return "0";
+		case LONG:
+			return "0L";
+		case FLOAT:
+			return "0F";
+		case DOUBLE:
+			return "0D";
+		default:
+			return "null";
+		}
+	}
+
+	/**
+	 * Return the name of a possibly nested class without its package, nesting
+	 * levels joined by underscores.
+	 */
+	private String flatName(final TypeElement type) {
+		final String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		final String name = type.getQualifiedName().toString();
+		return (packageName.isEmpty() ? name : name.substring(packageName.length() + 1)).replace('.', '_');
+	}
+
+	/**
+	 * Register the generated copiers as services, keeping the entries of earlier
+	 * incremental compilations.
+	 */
+	private void writeServices() {
+		if (copiers.isEmpty()) {
+			return;
+		}
+		final Filer filer = processingEnv.getFiler();
+		final Set<String> services = new TreeSet<String>(copiers);
+		try {
+			final FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE);
+			final BufferedReader reader = new BufferedReader(existing.openReader(true));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (!line.trim().isEmpty()) {
+						services.add(line.trim());
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (final IOException e) {
+			// No earlier registrations
+		}
+		try {
+			final Writer writer = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE).openWriter();
+			try {
+				for (final String service : services) {
+					writer.write(service);
+					writer.write('\n');
+				}
+			} finally {
+				writer.close();
+			}
+		} catch (final IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write " + SERVICE + ": " + e);
+		}
+	}
+
+	private void error(final Element element, final AnnotationMirror mirror, final String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element, mirror);
+	}
+
+}
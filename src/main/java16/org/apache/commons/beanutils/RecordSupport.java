@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.commons.beanutils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.RecordComponent;
+
+import org.deking.util.common.RecComponent;
+
+/**
+ * <p>
+ * Platform access to records and to the members of user classes.
+ * </p>
+ *
+ * <p>
+ * This is the Java 16 implementation, packaged under
+ * <code>META-INF/versions/16</code>. It reads records through
+ * {@link Class#getRecordComponents()} and binds members through a private lookup
+ * in their own class, so accessors spun by <code>LambdaMetafactory</code> are
+ * defined next to the class they read, whatever its class loader.
+ * </p>
+ *
+ * @version $Id$
+ */
+final class RecordSupport {
+
+	private RecordSupport() {
+	}
+
+	/**
+	 * Return <code>true</code> if the specified class is a record class.
+	 */
+	static boolean isRecord(final Class<?> type) {
+		return type.isRecord();
+	}
+
+	/**
+	 * Return the components of the specified record class in declaration order.
+	 */
+	static RecComponent[] components(final Class<?> recordClass) {
+		final RecordComponent[] recordComponents = recordClass.getRecordComponents();
+		final RecComponent[] components = new RecComponent[recordComponents.length];
+		for (int i = 0; i < recordComponents.length; i++) {
+			components[i] = new RecComponent(recordComponents[i].getName(), recordComponents[i].getGenericType(), i);
+		}
+		return components;
+	}
+
+	/**
+	 * Return the lookup used to bind members of the specified class.
+	 */
+	static MethodHandles.Lookup lookup(final Class<?> type) {
+		try {
+			return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+		} catch (final IllegalAccessException e) {
+			return MethodHandles.lookup();
+		} catch (final SecurityException e) {
+			return MethodHandles.lookup();
+		}
+	}
+
+	/**
+	 * Define a hidden class in the package of the lookup class.
+	 *
+	 * @return the lookup of the new class
+	 */
+	static MethodHandles.Lookup defineHiddenClass(final MethodHandles.Lookup lookup, final byte[] bytes)
+			throws IllegalAccessException {
+		return lookup.defineHiddenClass(bytes, true);
+	}
+
+}
@@ -1,47 +1,970 @@
-package org.apache.commons.beanutils.test;
-
-import java.lang.reflect.InvocationTargetException;
-import org.apache.commons.beanutils.BeanUtilsBeanImpl;
-import org.apache.commons.beanutils.ConvertUtilsBean;
-import org.junit.Assert;
-import org.junit.Test;
-
-public class BeanUtilsBeanImplTest {
-	public static class testClass {
-		private String name;
-
-		private int age;
-
-		public String getName() {
-			return name;
-		}
-
-		public void setName(String name) {
-			this.name = name;
-		}
-
-		public int getAge() {
-			return age;
-		}
-
-		public void setAge(int age) {
-			this.age = age;
-		}
-
-	}
-
-	public static record testRecord(String name, int age) {
-
-	}
-
-	@Test
-	public void copyProperties() throws IllegalAccessException, InvocationTargetException {
-		testRecord orig = new testRecord("tom", 1);
-		testClass dest = new testClass();
-		new BeanUtilsBeanImpl(new ConvertUtilsBean() {
-		}).copyProperties(dest, orig);
-		Assert.assertEquals(dest.name, orig.name);
-		Assert.assertEquals(dest.age, orig.age);
-	}
-
-}
+package org.apache.commons.beanutils.test;
+
+import java.lang.management.ManagementFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.beanutils.BeanUtilsBean;
+import org.apache.commons.beanutils.BeanUtilsBeanImpl;
+import org.apache.commons.beanutils.ConvertUtilsBean;
+import org.apache.commons.beanutils.Converter;
+import org.apache.commons.beanutils.DelimitedRecordIterator;
+import org.apache.commons.beanutils.FluentPropertyBeanIntrospector;
+import org.apache.commons.beanutils.NestedNullException;
+import org.apache.commons.beanutils.PropertyPath;
+import org.apache.commons.beanutils.PropertyUtilsBean;
+import org.apache.commons.beanutils.PropertyUtilsBeanImpl;
+import org.apache.commons.beanutils.RecordCopier;
+import org.apache.commons.beanutils.RecordMapping;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+@RecordMapping(from = BeanUtilsBeanImplTest.testRecord.class, to = BeanUtilsBeanImplTest.stringClass.class)
+@RecordMapping(from = BeanUtilsBeanImplTest.testClass.class, to = BeanUtilsBeanImplTest.testRecord.class)
+@RecordMapping(from = BeanUtilsBeanImplTest.stringRecord.class, to = BeanUtilsBeanImplTest.callerClass.class)
+@RecordMapping(from = BeanUtilsBeanImplTest.dateClass.class, to = BeanUtilsBeanImplTest.ageRecord.class)
+public class BeanUtilsBeanImplTest {
+	public static class testClass {
+		private String name;
+
+		private int age;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getAge() {
+			return age;
+		}
+
+		public void setAge(int age) {
+			this.age = age;
+		}
+
+	}
+
+	public static record testRecord(String name, int age) {
+
+	}
+
+	public static record nestedRecord(testRecord inner, List<testRecord> list) {
+
+	}
+
+	public static record addressRecord(String city, int zip) {
+
+	}
+
+	public static record customerRecord(String name, addressRecord address, addressRecord billing) {
+
+	}
+
+	public static record orderRecord(long id, customerRecord customer, orderRecord parent) {
+
+	}
+
+	public static record stringRecord(String name, String age) {
+
+	}
+
+	public static record ageRecord(long age) {
+
+	}
+
+	public static record bookRecord(String name, List<addressRecord> addresses, Map<String, addressRecord> byName,
+			addressRecord[] array) {
+
+	}
+
+	public static class orderBean {
+		private long id;
+		private Object customer;
+		private orderBean parent;
+
+		public long getId() {
+			return id;
+		}
+
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		public Object getCustomer() {
+			return customer;
+		}
+
+		public void setCustomer(Object customer) {
+			this.customer = customer;
+		}
+
+		public orderBean getParent() {
+			return parent;
+		}
+
+		public void setParent(orderBean parent) {
+			this.parent = parent;
+		}
+	}
+
+	public static record formRecord(String name, int[] scores, Optional<Integer> level, Long count) {
+
+	}
+
+	public static class stringClass {
+		private String name;
+
+		private String age;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public String getAge() {
+			return age;
+		}
+
+		public void setAge(String age) {
+			this.age = age;
+		}
+
+	}
+
+	public static class dateClass {
+		private Date name;
+
+		private Long age;
+
+		public Date getName() {
+			return name;
+		}
+
+		public void setName(Date name) {
+			this.name = name;
+		}
+
+		public Long getAge() {
+			return age;
+		}
+
+		public void setAge(Long age) {
+			this.age = age;
+		}
+
+	}
+
+	public static class callerClass {
+		private static final StackWalker WALKER = StackWalker.getInstance(
+				EnumSet.of(StackWalker.Option.RETAIN_CLASS_REFERENCE, StackWalker.Option.SHOW_HIDDEN_FRAMES));
+
+		private String name;
+
+		private Class<?> caller;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+			if (caller == null || !caller.isHidden()) {
+				// Compiled copies must not allocate
+				this.caller = WALKER.walk(frames -> frames.skip(1).findFirst().get().getDeclaringClass());
+			}
+		}
+
+		public void setAge(int age) {
+			if (age < 0) {
+				throw new IllegalStateException("negative age");
+			}
+		}
+
+	}
+
+	public static class fluentClass {
+		private String name;
+
+		public String getName() {
+			return name;
+		}
+
+		public fluentClass setName(String name) {
+			this.name = name;
+			return this;
+		}
+
+	}
+
+	/**
+	 * Stub of a forward-only result set over rows of values.
+	 */
+	private static ResultSet resultSet(String[] labels, Object[][] rows, List<String> calls) {
+		ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+				ResultSetMetaData.class.getClassLoader(), new Class<?>[] { ResultSetMetaData.class },
+				(proxy, method, args) -> switch (method.getName()) {
+				case "getColumnCount" -> labels.length;
+				case "getColumnLabel" -> labels[(Integer) args[0] - 1];
+				default -> throw new UnsupportedOperationException(method.getName());
+				});
+		int[] row = { -1 };
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+				(proxy, method, args) -> {
+					calls.add(method.getName());
+					switch (method.getName()) {
+					case "getMetaData":
+						return metaData;
+					case "next":
+						return ++row[0] < rows.length;
+					case "getInt":
+						return ((Number) rows[row[0]][(Integer) args[0] - 1]).intValue();
+					case "getString":
+						return (String) rows[row[0]][(Integer) args[0] - 1];
+					case "getObject":
+						return rows[row[0]][(Integer) args[0] - 1];
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	/**
+	 * Whether the RecordSupport loaded is the Java 16 one, which defines hidden
+	 * classes, and not the Java 8 one found first when the tests run on the class
+	 * directory instead of the multi-release jar.
+	 */
+	private static boolean definesHiddenClasses() throws ReflectiveOperationException {
+		Method lookup = Class.forName("org.apache.commons.beanutils.RecordSupport").getDeclaredMethod("lookup",
+				Class.class);
+		lookup.setAccessible(true);
+		return ((MethodHandles.Lookup) lookup.invoke(null, testClass.class)).lookupClass() == testClass.class;
+	}
+
+	/**
+	 * Class loader defining its own copy of some test classes, like the class
+	 * loader of a web application holding classes also found by its parent.
+	 */
+	private static class ChildLoader extends ClassLoader {
+		private final Set<String> names;
+
+		ChildLoader(String... names) {
+			super(BeanUtilsBeanImplTest.class.getClassLoader());
+			this.names = Set.of(names);
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!names.contains(name)) {
+				return super.loadClass(name, resolve);
+			}
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> type = findLoadedClass(name);
+				if (type == null) {
+					try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+						byte[] bytes = in.readAllBytes();
+						type = defineClass(name, bytes, 0, bytes.length);
+					} catch (IOException e) {
+						throw new ClassNotFoundException(name, e);
+					}
+				}
+				return type;
+			}
+		}
+	}
+
+	@Test
+	public void copyProperties() throws IllegalAccessException, InvocationTargetException {
+		testRecord orig = new testRecord("tom", 1);
+		testClass dest = new testClass();
+		new BeanUtilsBeanImpl(new ConvertUtilsBean() {
+		}).copyProperties(dest, orig);
+		Assert.assertEquals(dest.name, orig.name);
+		Assert.assertEquals(dest.age, orig.age);
+	}
+
+	@Test
+	public void copyPropertiesReusesPlan() throws IllegalAccessException, InvocationTargetException {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		for (int i = 0; i < 3; i++) {
+			testRecord orig = new testRecord("tom" + i, i);
+			testClass dest = new testClass();
+			beanUtils.copyProperties(dest, orig);
+			Assert.assertEquals(orig.name, dest.name);
+			Assert.assertEquals(orig.age, dest.age);
+		}
+	}
+
+	@Test
+	public void copyPropertiesConverts() throws IllegalAccessException, InvocationTargetException {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		stringClass orig = new stringClass();
+		orig.setName("tom");
+		orig.setAge("12");
+		testClass dest = new testClass();
+		beanUtils.copyProperties(dest, orig);
+		Assert.assertEquals("tom", dest.name);
+		Assert.assertEquals(12, dest.age);
+
+		stringClass back = new stringClass();
+		beanUtils.copyProperties(back, new testRecord("jerry", 7));
+		Assert.assertEquals("jerry", back.name);
+		Assert.assertEquals("7", back.age);
+	}
+
+	@Test
+	public void copyPropertiesConvertsLikeCopyProperty() throws IllegalAccessException, InvocationTargetException {
+		dateClass orig = new dateClass();
+		orig.setName(new Date(0));
+		orig.setAge(12L);
+		stringClass expected = new stringClass();
+		new BeanUtilsBean().copyProperties(expected, orig);
+		stringClass dest = new stringClass();
+		new BeanUtilsBeanImpl(new ConvertUtilsBean()).copyProperties(dest, orig);
+		Assert.assertEquals(expected.name, dest.name);
+		Assert.assertEquals(expected.age, dest.age);
+		Assert.assertEquals(orig.getName().toString(), dest.name);
+		Assert.assertEquals("12", dest.age);
+	}
+
+	@Test
+	public void clearCachesPicksUpConverters() throws IllegalAccessException, InvocationTargetException {
+		ConvertUtilsBean convertUtils = new ConvertUtilsBean();
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(convertUtils);
+		stringClass dest = new stringClass();
+		beanUtils.copyProperties(dest, new testRecord("tom", 1));
+		Assert.assertEquals("1", dest.age);
+
+		convertUtils.register(new Converter() {
+			@Override
+			public <T> T convert(Class<T> type, Object value) {
+				return type.cast("#" + value);
+			}
+		}, String.class);
+		beanUtils.clearCaches();
+		beanUtils.copyProperties(dest, new testRecord("tom", 1));
+		Assert.assertEquals("#1", dest.age);
+	}
+
+	@Test
+	public void copyPropertiesToRecord() throws IllegalAccessException, InvocationTargetException {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		testRecord orig = new testRecord("tom", 3);
+		testRecord copy = beanUtils.copyProperties(testRecord.class, orig, null);
+		Assert.assertEquals(orig, copy);
+
+		Map<String, Object> overrides = new HashMap<>();
+		overrides.put("age", 4);
+		Assert.assertEquals(new testRecord("tom", 4), beanUtils.copyProperties(testRecord.class, orig, overrides));
+	}
+
+	@Test
+	public void populateRecord() {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		Map<String, Object> properties = new HashMap<>();
+		properties.put("name", new String[] { "tom" });
+		properties.put("age", "5");
+		Assert.assertEquals(new testRecord("tom", 5), beanUtils.populate(testRecord.class, properties));
+		Assert.assertEquals(new testRecord(null, 0), beanUtils.populate(testRecord.class, new HashMap<>()));
+	}
+
+	@Test
+	public void copyPropertiesToRecordFromBeanAndMap() throws IllegalAccessException, InvocationTargetException {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		testClass bean = new testClass();
+		bean.setName("tom");
+		bean.setAge(8);
+		Assert.assertEquals(new testRecord("tom", 8), beanUtils.copyProperties(testRecord.class, bean, null));
+
+		Map<String, Object> orig = new HashMap<>();
+		orig.put("name", "jerry");
+		orig.put("unknown", "ignored");
+		Assert.assertEquals(new testRecord("jerry", 0), beanUtils.copyProperties(testRecord.class, orig, null));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void copyPropertiesToRecordRejectsMismatchedArgument()
+			throws IllegalAccessException, InvocationTargetException {
+		Map<String, Object> overrides = new HashMap<>();
+		overrides.put("age", "not a number");
+		new BeanUtilsBeanImpl(new ConvertUtilsBean()).copyProperties(testRecord.class, new testRecord("tom", 1),
+				overrides);
+	}
+
+	@Test
+	public void populateRecordConvertsComponents() {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		Map<String, Object> properties = new HashMap<>();
+		properties.put("name", new String[] { "tom", "ignored" });
+		properties.put("scores", "1,2,3");
+		properties.put("level", "4");
+		properties.put("count", 5);
+		for (int i = 0; i < 2; i++) {
+			formRecord record = beanUtils.populate(formRecord.class, properties);
+			Assert.assertEquals("tom", record.name());
+			Assert.assertArrayEquals(new int[] { 1, 2, 3 }, record.scores());
+			Assert.assertEquals(Optional.of(4), record.level());
+			Assert.assertEquals(Long.valueOf(5), record.count());
+		}
+	}
+
+	@Test
+	public void copyPropertiesUsesGeneratedCopier() throws IllegalAccessException, InvocationTargetException {
+		Set<String> generated = new HashSet<>();
+		for (RecordCopier<?, ?> copier : ServiceLoader.load(RecordCopier.class)) {
+			generated.add(copier.getOriginType().getSimpleName() + "->" + copier.getDestinationType().getSimpleName());
+			Assert.assertEquals(copier.getDestinationType().isRecord(), copier instanceof RecordCopier.ToRecord);
+			Assert.assertEquals(!copier.getDestinationType().isRecord(), copier instanceof RecordCopier.ToBean);
+		}
+		Assert.assertTrue(generated.contains("testRecord->stringClass"));
+		Assert.assertTrue(generated.contains("testClass->testRecord"));
+		Assert.assertTrue(generated.contains("dateClass->ageRecord"));
+
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		stringClass dest = new stringClass();
+		beanUtils.copyProperties(dest, new testRecord("tom", 9));
+		Assert.assertEquals("tom", dest.name);
+		Assert.assertEquals("9", dest.age);
+
+		testClass orig = new testClass();
+		orig.setName("jerry");
+		orig.setAge(2);
+		Assert.assertEquals(new testRecord("jerry", 2), beanUtils.copyProperties(testRecord.class, orig, null));
+	}
+
+	@Test
+	public void generatedCopiersFailLikePlans() throws IllegalAccessException, InvocationTargetException {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		for (Object dest : new Object[] { new callerClass(), new testClass() }) {
+			try {
+				beanUtils.copyProperties(dest, new stringRecord("tom", null));
+				Assert.fail();
+			} catch (IllegalArgumentException e) {
+				Assert.assertEquals("Cannot set property 'age' of class '" + dest.getClass().getName()
+						+ "' to a value of type 'null' - argument type mismatch", e.getMessage());
+			} catch (InvocationTargetException e) {
+				Assert.fail();
+			}
+		}
+		try {
+			beanUtils.copyProperties(new callerClass(), new stringRecord("tom", "-1"));
+			Assert.fail();
+		} catch (InvocationTargetException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+
+		dateClass orig = new dateClass();
+		orig.setAge(3L);
+		Assert.assertEquals(new ageRecord(3), beanUtils.copyProperties(ageRecord.class, orig, null));
+		orig.setAge(null);
+		Map<String, Object> properties = new HashMap<>();
+		properties.put("age", null);
+		for (Object origin : new Object[] { orig, properties }) {
+			try {
+				beanUtils.copyProperties(ageRecord.class, origin, null);
+				Assert.fail();
+			} catch (IllegalArgumentException e) {
+				Assert.assertEquals("Cannot pass a value of type 'null' to component 'age' of record class '"
+						+ ageRecord.class.getName() + "' - argument type mismatch", e.getMessage());
+			} catch (InvocationTargetException e) {
+				Assert.fail();
+			}
+		}
+	}
+
+	@Test
+	public void copyPropertiesCompilesHotClassPairs() throws ReflectiveOperationException {
+		Assume.assumeTrue("RecordSupport cannot define hidden classes", definesHiddenClasses());
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		beanUtils.setCompileThreshold(2);
+		callerClass dest = new callerClass();
+		for (int i = 0; i < 3; i++) {
+			beanUtils.copyProperties(dest, new testRecord("tom" + i, i));
+			Assert.assertEquals("tom" + i, dest.name);
+			Assert.assertFalse(dest.caller.isHidden());
+		}
+		beanUtils.copyProperties(dest, new testRecord("jerry", 1));
+		Assert.assertEquals("jerry", dest.name);
+		Assert.assertTrue(dest.caller.isHidden());
+
+		try {
+			beanUtils.copyProperties(dest, new testRecord("tom", -1));
+			Assert.fail();
+		} catch (InvocationTargetException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		Assert.assertEquals("tom", dest.name);
+
+		beanUtils.setCompileThreshold(0);
+		dateClass orig = new dateClass();
+		orig.setName(new Date(0));
+		orig.setAge(5L);
+		for (int i = 0; i < 2; i++) {
+			dest = new callerClass();
+			beanUtils.copyProperties(dest, orig);
+			Assert.assertEquals(orig.getName().toString(), dest.name);
+			Assert.assertEquals(i > 0, dest.caller.isHidden());
+		}
+		orig.setAge(null);
+		try {
+			beanUtils.copyProperties(dest, orig);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertEquals("Cannot set property 'age' of class '" + callerClass.class.getName()
+					+ "' to a value of type 'null' - argument type mismatch", e.getMessage());
+		}
+	}
+
+	@Test
+	public void copyPropertiesFromMapCachesConversions() throws IllegalAccessException, InvocationTargetException {
+		ConvertUtilsBean convertUtils = new ConvertUtilsBean();
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(convertUtils);
+		Map<String, Object> orig = new HashMap<>();
+		orig.put("name", "tom");
+		orig.put("age", 6);
+		for (int i = 0; i < 2; i++) {
+			testClass dest = new testClass();
+			beanUtils.copyProperties(dest, orig);
+			Assert.assertEquals("tom", dest.name);
+			Assert.assertEquals(6, dest.age);
+		}
+		orig.put("age", "7");
+		testClass dest = new testClass();
+		beanUtils.copyProperties(dest, orig);
+		Assert.assertEquals(7, dest.age);
+
+		convertUtils.register(new Converter() {
+			@Override
+			public <T> T convert(Class<T> type, Object value) {
+				return type.cast("#" + value);
+			}
+		}, String.class);
+		beanUtils.clearCaches();
+		beanUtils.copyProperties(dest, orig);
+		Assert.assertEquals("#tom", dest.name);
+	}
+
+	@Test
+	public void unwriteablePropertiesAreForgottenWithTheIntrospectors() {
+		PropertyUtilsBean propertyUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean()).getPropertyUtils();
+		fluentClass bean = new fluentClass();
+		Assert.assertFalse(propertyUtils.isWriteable(bean, "name"));
+		Assert.assertFalse(propertyUtils.isWriteable(bean, "name"));
+		Assert.assertFalse(propertyUtils.isReadable(bean, "unknown"));
+		Assert.assertTrue(propertyUtils.isReadable(bean, "name"));
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertFalse(propertyUtils.isReadable(bean, "unknown" + i));
+			Assert.assertFalse(propertyUtils.isWriteable(bean, "unknown" + i));
+		}
+		Assert.assertFalse(propertyUtils.isReadable(bean, "unknown999"));
+		Assert.assertTrue(propertyUtils.isReadable(bean, "name"));
+
+		propertyUtils.addBeanIntrospector(new FluentPropertyBeanIntrospector());
+		propertyUtils.clearDescriptors();
+		Assert.assertTrue(propertyUtils.isWriteable(bean, "name"));
+	}
+
+	@Test
+	public void copyPropertiesFromRecordDoesNotAllocate() throws ReflectiveOperationException {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)
+				|| !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+			return;
+		}
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		long thread = Thread.currentThread().getId();
+		testRecord orig = new testRecord("tom", 1000);
+		for (int threshold : new int[] { -1, 0 }) {
+			BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+			beanUtils.setCompileThreshold(threshold);
+			Object dest = threshold < 0 ? new testClass() : new callerClass();
+			for (int i = 0; i < 20_000; i++) {
+				beanUtils.copyProperties(dest, orig);
+			}
+			if (threshold >= 0) {
+				Assume.assumeTrue("RecordSupport cannot define hidden classes", definesHiddenClasses());
+				Assert.assertTrue("The compiled copier is not in use", ((callerClass) dest).caller.isHidden());
+			}
+			long before = allocations.getThreadAllocatedBytes(thread);
+			for (int i = 0; i < 100_000; i++) {
+				beanUtils.copyProperties(dest, orig);
+			}
+			long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+			// A single allocation per copy would be at least 1.6 MB
+			Assert.assertTrue("Allocated " + allocated + " bytes", allocated < 100_000);
+		}
+	}
+
+	@Test
+	public void copyAllToRecords() throws IllegalAccessException, InvocationTargetException {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		List<Object> origins = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			testClass bean = new testClass();
+			bean.setName("tom" + i);
+			bean.setAge(i);
+			origins.add(bean);
+		}
+		origins.add(new testRecord("jerry", 4));
+		Map<String, Object> map = new HashMap<>();
+		map.put("name", "spike");
+		origins.add(map);
+
+		List<testRecord> expected = List.of(new testRecord("tom0", 0), new testRecord("tom1", 1),
+				new testRecord("tom2", 2), new testRecord("jerry", 4), new testRecord("spike", 0));
+		Assert.assertEquals(expected, beanUtils.copyAll(testRecord.class, origins));
+		Assert.assertArrayEquals(expected.toArray(),
+				beanUtils.copyAll(testRecord.class, origins.toArray()));
+	}
+
+	@Test
+	public void parallelCopyAllKeepsOrder() throws IllegalAccessException, InvocationTargetException {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		List<Object> origins = new ArrayList<>();
+		List<Map<String, Object>> properties = new ArrayList<>();
+		List<testRecord> expected = new ArrayList<>();
+		for (int i = 0; i < 10_000; i++) {
+			testClass bean = new testClass();
+			bean.setName("tom" + i);
+			bean.setAge(i);
+			origins.add(i % 2 == 0 ? bean : new testRecord("tom" + i, i));
+			Map<String, Object> map = new HashMap<>();
+			map.put("name", "tom" + i);
+			map.put("age", String.valueOf(i));
+			properties.add(map);
+			expected.add(new testRecord("tom" + i, i));
+		}
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			Assert.assertEquals(expected, beanUtils.parallelCopyAll(testRecord.class, origins, pool));
+			Assert.assertEquals(expected, beanUtils.parallelPopulateAll(testRecord.class, properties, pool));
+
+			origins.set(5_000, null);
+			try {
+				beanUtils.parallelCopyAll(testRecord.class, origins, pool);
+				Assert.fail();
+			} catch (IllegalArgumentException e) {
+				Assert.assertEquals("No origin bean specified", e.getMessage());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void mappersCreateRecords() {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		testClass bean = new testClass();
+		bean.setName("tom");
+		bean.setAge(3);
+		Assert.assertEquals(List.of(new testRecord("tom", 3), new testRecord("jerry", 4)),
+				Stream.of(bean, new testRecord("jerry", 4)).parallel().map(beanUtils.mapperFor(testRecord.class))
+						.collect(Collectors.toList()));
+
+		Map<String, Object> properties = new HashMap<>();
+		properties.put("name", "spike");
+		properties.put("age", "5");
+		Assert.assertEquals(List.of(new testRecord("spike", 5)), Stream.of(properties)
+				.map(beanUtils.populateMapperFor(testRecord.class)).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void populateColumnsBindsColumns() {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		Map<String, Object> columns = new HashMap<>();
+		columns.put("name", new String[] { "tom", null, "spike" });
+		columns.put("age", new int[] { 1, 2, 3 });
+		Assert.assertEquals(List.of(new testRecord("tom", 1), new testRecord(null, 2), new testRecord("spike", 3)),
+				beanUtils.populateColumns(testRecord.class, columns));
+
+		Map<String, Object> formColumns = new HashMap<>();
+		formColumns.put("level", new Object[] { "4", 5 });
+		formColumns.put("count", new long[] { 6, 7 });
+		List<formRecord> records = beanUtils.populateColumns(formRecord.class, formColumns);
+		Assert.assertEquals(Optional.of(4), records.get(0).level());
+		Assert.assertEquals(Optional.of(5), records.get(1).level());
+		Assert.assertEquals(Long.valueOf(7), records.get(1).count());
+
+		columns.put("age", new int[] { 1 });
+		try {
+			beanUtils.populateColumns(testRecord.class, columns);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("rows"));
+		}
+	}
+
+	@Test
+	public void resultSetRowsAreMappedLazily() throws SQLException {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		List<String> calls = new ArrayList<>();
+		ResultSet resultSet = resultSet(new String[] { "ID", "AGE", "NAME" },
+				new Object[][] { { 1, 3, "tom" }, { 2, 4, "jerry" }, { 3, 5, "spike" } }, calls);
+		Iterator<testRecord> records = beanUtils.resultSetIterator(testRecord.class, resultSet);
+		Assert.assertEquals(new testRecord("tom", 3), records.next());
+		Assert.assertEquals(List.of("getMetaData", "next", "getString", "getInt"), calls);
+		Assert.assertEquals(new testRecord("jerry", 4), records.next());
+		Assert.assertEquals(new testRecord("spike", 5), records.next());
+		Assert.assertFalse(records.hasNext());
+
+		resultSet = resultSet(new String[] { "COUNT", "EXTRA" }, new Object[][] { { 7, "x" }, { null, "y" } }, calls);
+		Assert.assertEquals(List.of(7L, -1L), beanUtils.resultSetStream(formRecord.class, resultSet)
+				.map(record -> record.count() != null ? record.count() : -1L).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void delimitedFilesAreMappedToRecords() throws IOException {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		Path file = Files.createTempFile("records", ".csv");
+		try {
+			Files.write(file, ("extra,AGE,age,name\r\n" + "x,1,3,tom\r\n" + "\n" + "y,,-4,\"jerry, \"\"the\"\"\n mouse\"\n"
+					+ "z,,12345678901\n" + "w,2").getBytes(StandardCharsets.UTF_8));
+			List<testRecord> records = new ArrayList<>();
+			try (DelimitedRecordIterator<testRecord> iterator = beanUtils.delimitedIterator(testRecord.class,
+					file.toFile(), ',')) {
+				iterator.forEachRemaining(records::add);
+				Assert.assertFalse(iterator.hasNext());
+			}
+			Assert.assertEquals(List.of(new testRecord("tom", 3), new testRecord("jerry, \"the\"\n mouse", -4),
+					new testRecord(null, 0), new testRecord(null, 0)), records);
+
+			Files.write(file, "count\tname\n7\tspike\n".getBytes(StandardCharsets.UTF_8));
+			try (DelimitedRecordIterator<formRecord> iterator = beanUtils.delimitedIterator(formRecord.class,
+					file.toFile(), '\t')) {
+				formRecord record = iterator.next();
+				Assert.assertEquals("spike", record.name());
+				Assert.assertEquals(Long.valueOf(7), record.count());
+				Assert.assertFalse(iterator.hasNext());
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void asMapViewsRecords() {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		Map<String, Object> view = beanUtils.asMap(new testRecord("tom", 3));
+		Assert.assertEquals(2, view.size());
+		Assert.assertEquals("tom", view.get("name"));
+		Assert.assertEquals(3, view.get("age"));
+		Assert.assertNull(view.get("class"));
+		Assert.assertFalse(view.containsKey("class"));
+		Assert.assertEquals(List.of("name", "age"), new ArrayList<>(view.keySet()));
+		Assert.assertEquals(Map.of("name", "tom", "age", 3), view);
+		Assert.assertEquals("{name=tom, age=3}", view.toString());
+		try {
+			view.put("age", 4);
+			Assert.fail();
+		} catch (UnsupportedOperationException e) {
+		}
+		try {
+			beanUtils.asMap(new testClass());
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void recordComponentsAreProperties() throws Exception {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		PropertyUtilsBean propertyUtils = beanUtils.getPropertyUtils();
+		testRecord record = new testRecord("tom", 3);
+		Assert.assertEquals("tom", propertyUtils.getProperty(record, "name"));
+		Assert.assertEquals(3, propertyUtils.getSimpleProperty(record, "age"));
+		Assert.assertTrue(propertyUtils.isReadable(record, "age"));
+		Assert.assertFalse(propertyUtils.isWriteable(record, "age"));
+		Assert.assertNull(propertyUtils.getPropertyDescriptor(record, "name").getWriteMethod());
+		Assert.assertEquals(Map.of("name", "tom", "age", "3"), beanUtils.describe(record));
+
+		nestedRecord nested = new nestedRecord(record, List.of(record));
+		Assert.assertEquals("tom", propertyUtils.getNestedProperty(nested, "inner.name"));
+		Assert.assertEquals(3, propertyUtils.getProperty(nested, "list[0].age"));
+	}
+
+	@Test
+	public void compiledPathsReadNestedProperties() throws Exception {
+		PropertyUtilsBeanImpl propertyUtils = (PropertyUtilsBeanImpl) new BeanUtilsBeanImpl(new ConvertUtilsBean())
+				.getPropertyUtils();
+		testClass bean = new testClass();
+		bean.setName("jerry");
+		nestedRecord nested = new nestedRecord(new testRecord("tom", 3), List.of(new testRecord("spike", 5)));
+		PropertyPath path = propertyUtils.compilePath("list[0].age");
+		Assert.assertEquals(5, path.get(nested));
+		Assert.assertEquals(5, path.get(nested));
+		Assert.assertEquals("inner.name", propertyUtils.compilePath("inner.name").toString());
+		Assert.assertEquals("tom", propertyUtils.compilePath("inner.name").get(nested));
+
+		PropertyPath name = propertyUtils.compilePath("name");
+		Assert.assertEquals("jerry", name.get(bean));
+		Assert.assertEquals("tom", name.get(new testRecord("tom", 3)));
+		Assert.assertEquals("jerry", name.get(bean));
+		Assert.assertEquals("spike", name.get(Map.of("name", "spike")));
+		try {
+			propertyUtils.compilePath("inner.name.length").get(new nestedRecord(null, List.of()));
+			Assert.fail();
+		} catch (NestedNullException e) {
+		}
+		try {
+			name.get(nested);
+			Assert.fail();
+		} catch (NoSuchMethodException e) {
+		}
+	}
+
+	@Test
+	public void populateBuildsNestedRecords() {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		Map<String, Object> properties = new HashMap<>();
+		properties.put("id", "7");
+		properties.put("customer.name", "tom");
+		properties.put("customer.address.city", "Paris");
+		properties.put("customer.address.zip", new String[] { "75001" });
+		properties.put("customer.address.country", "FR");
+		properties.put("customer.billing", new addressRecord("Lyon", 69001));
+		properties.put("parent.id", "6");
+		properties.put("parent.parent.customer.name", "ann");
+		Assert.assertEquals(new orderRecord(7, new customerRecord("tom", new addressRecord("Paris", 75001),
+				new addressRecord("Lyon", 69001)), new orderRecord(6, null, new orderRecord(0,
+						new customerRecord("ann", null, null), null))), beanUtils.populate(orderRecord.class, properties));
+
+		properties.put("customer.billing.city", "Nice");
+		Assert.assertEquals(new addressRecord("Nice", 0),
+				beanUtils.populate(orderRecord.class, properties).customer().billing());
+		Assert.assertNull(beanUtils.populate(orderRecord.class, Map.of("id", "1")).customer());
+	}
+
+	@Test
+	public void deepCopyBuildsRecordGraphs() throws Exception {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		Map<String, Object> paris = Map.of("city", "Paris", "zip", 75001);
+		addressRecord lyon = new addressRecord("Lyon", 69001);
+		Map<String, Object> addresses = new LinkedHashMap<>();
+		addresses.put("home", paris);
+		addresses.put("work", lyon);
+		addresses.put("none", null);
+		bookRecord book = beanUtils.deepCopy(bookRecord.class, Map.of("name", "tom", "addresses",
+				List.of(paris, lyon), "byName", addresses, "array", new Object[] { paris }));
+		Assert.assertEquals(List.of(new addressRecord("Paris", 75001), lyon), book.addresses());
+		Assert.assertSame(lyon, book.addresses().get(1));
+		Assert.assertEquals(List.of("home", "work", "none"), new ArrayList<>(book.byName().keySet()));
+		Assert.assertEquals(new addressRecord("Paris", 75001), book.byName().get("home"));
+		Assert.assertNull(book.byName().get("none"));
+		Assert.assertArrayEquals(new addressRecord[] { new addressRecord("Paris", 75001) }, book.array());
+		Assert.assertEquals(new customerRecord("7", new addressRecord("Nice", 6000), null),
+				beanUtils.deepCopy(customerRecord.class, Map.of("name", 7, "address", Map.of("city", "Nice", "zip",
+						"6000"))));
+
+		orderBean parent = new orderBean();
+		parent.setId(1);
+		parent.setCustomer(Map.of("name", "tom", "address", paris));
+		orderBean order = new orderBean();
+		order.setId(2);
+		order.setCustomer(parent.getCustomer());
+		order.setParent(parent);
+		orderRecord copy = beanUtils.deepCopy(orderRecord.class, order);
+		Assert.assertEquals(new orderRecord(2, new customerRecord("tom", new addressRecord("Paris", 75001), null),
+				new orderRecord(1, new customerRecord("tom", new addressRecord("Paris", 75001), null), null)), copy);
+		Assert.assertSame(copy.customer(), copy.parent().customer());
+
+		parent.setParent(order);
+		try {
+			beanUtils.deepCopy(orderRecord.class, order);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	@Test
+	public void recordsAreDerivedFromRecords() throws Exception {
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		customerRecord customer = new customerRecord("tom", new addressRecord("Paris", 75001), null);
+		customerRecord moved = beanUtils.with(customer, Map.of("billing", new addressRecord("Lyon", 69001)));
+		Assert.assertEquals(new customerRecord("tom", customer.address(), new addressRecord("Lyon", 69001)), moved);
+		Assert.assertSame(customer.address(), moved.address());
+		Assert.assertSame(customer, beanUtils.with(customer, Map.of()));
+		try {
+			beanUtils.with(customer, Map.of("zip", 1));
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+		}
+
+		Assert.assertEquals(new testRecord("Paris", 75001),
+				beanUtils.copyRecord(testRecord.class, new stringRecord("Paris", "75001")));
+		formRecord form = new formRecord("tom", new int[] { 1 }, Optional.of(2), 3L);
+		formRecord copy = beanUtils.copyRecord(formRecord.class, form);
+		Assert.assertSame(form.scores(), copy.scores());
+		Assert.assertSame(form.level(), copy.level());
+	}
+
+	@Test
+	public void copyPropertiesReadsClassesOfChildLoaders() throws Exception {
+		ClassLoader loader = new ChildLoader(stringClass.class.getName(), stringRecord.class.getName());
+		Class<?> beanClass = loader.loadClass(stringClass.class.getName());
+		Class<?> recordClass = loader.loadClass(stringRecord.class.getName());
+		Assert.assertNotSame(stringClass.class, beanClass);
+		BeanUtilsBeanImpl beanUtils = new BeanUtilsBeanImpl(new ConvertUtilsBean());
+		Object orig = beanClass.getConstructor().newInstance();
+		beanUtils.setProperty(orig, "name", "tom");
+		beanUtils.setProperty(orig, "age", "7");
+		for (int i = 0; i < 3; i++) {
+			Object dest = beanClass.getConstructor().newInstance();
+			beanUtils.copyProperties(dest, orig);
+			Assert.assertEquals("tom", beanUtils.getProperty(dest, "name"));
+			Assert.assertEquals("7", beanUtils.getProperty(dest, "age"));
+		}
+		Object record = beanUtils.copyProperties(recordClass, orig, null);
+		Assert.assertSame(recordClass, record.getClass());
+		Assert.assertEquals("tom", beanUtils.getProperty(record, "name"));
+		Assert.assertEquals("7", beanUtils.getProperty(record, "age"));
+	}
+
+	@Test(timeout = 10000)
+	public void copyPropertiesSkipsUnreadableServiceFiles() throws Exception {
+		ClassLoader loader = new ChildLoader(stringRecord.class.getName()) {
+			@Override
+			public Enumeration<URL> getResources(String name) throws IOException {
+				throw new IOException(name);
+			}
+		};
+		Object orig = loader.loadClass(stringRecord.class.getName()).getConstructors()[0].newInstance("tom", "7");
+		stringClass dest = new stringClass();
+		new BeanUtilsBeanImpl(new ConvertUtilsBean()).copyProperties(dest, orig);
+		Assert.assertEquals("tom", dest.getName());
+		Assert.assertEquals("7", dest.getAge());
+	}
+
+}